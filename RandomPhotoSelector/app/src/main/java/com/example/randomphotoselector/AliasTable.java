@@ -0,0 +1,56 @@
+package com.example.randomphotoselector;
+
+import java.util.Random;
+
+// Vose's alias method: O(n) to build, O(1) per weighted pick. Each column holds its own
+// probability and an alias that takes the remainder, so a pick is one nextInt and one nextDouble.
+// Falls back to uniform picks when every weight is zero.
+public class AliasTable {
+
+    private final double[] probability;
+    private final int[] alias;
+
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        probability = new double[n];
+        alias = new int[n];
+        if (n == 0) return;
+
+        double total = 0;
+        for (double weight : weights) {
+            if (weight > 0) total += weight;
+        }
+
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0, largeCount = 0;
+        double[] scaled = new double[n];
+        for (int i = 0; i < n; i++) {
+            scaled[i] = total > 0 ? Math.max(0, weights[i]) * n / total : 1;
+            if (scaled[i] < 1) small[smallCount++] = i; else large[largeCount++] = i;
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) small[smallCount++] = more; else large[largeCount++] = more;
+        }
+        // Whatever is left is 1 up to rounding error
+        while (largeCount > 0) probability[large[--largeCount]] = 1;
+        while (smallCount > 0) probability[small[--smallCount]] = 1;
+    }
+
+    public int size() {
+        return probability.length;
+    }
+
+    // Index of a weighted pick, or -1 when the table is empty
+    public int next(Random random) {
+        if (probability.length == 0) return -1;
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.randomphotoselector;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+// The one preferences file for user-facing settings: grid span, photo transition, load profile
+// and the background rewrite toggles. Each key is declared next to the code that reads it.
+public final class AppSettings {
+
+    public static final String PREFS_NAME = "media_settings";
+
+    private AppSettings() {
+    }
+
+    public static SharedPreferences get(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.randomphotoselector;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+// Process-wide LRU of decoded bitmaps keyed by path and the size they were decoded for, so the
+// slideshow, the prefetcher and the scroll list never decode the same photo twice at one size.
+// The budget is a fraction of the app's memory class.
+public class BitmapCache {
+
+    private static final String TAG = "BitmapCache";
+    private static final int MEMORY_CLASS_FRACTION = 8;
+
+    private static BitmapCache instance;
+
+    private final LruCache<String, Bitmap> cache;
+    private final BitmapPool bitmapPool;
+
+    public static synchronized BitmapCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new BitmapCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private BitmapCache(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = activityManager != null ? activityManager.getMemoryClass() : 64;
+        int maxBytes = memoryClassMb * 1024 * 1024 / MEMORY_CLASS_FRACTION;
+        bitmapPool = BitmapPool.getInstance(context);
+        cache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                // The cache holds a pool reference to every entry; anything no longer shown is reused
+                bitmapPool.release(oldValue);
+            }
+        };
+        Log.d(TAG, "Budget " + (maxBytes / 1024) + " KB of a " + memoryClassMb + " MB memory class");
+    }
+
+    private static String key(String path, int width, int height) {
+        return path + "@" + width + "x" + height;
+    }
+
+    public Bitmap get(String path, int width, int height) {
+        return cache.get(key(path, width, height));
+    }
+
+    // Looks up and takes a pool reference in one step. LruCache evicts under its own lock and
+    // releases afterwards, so holding that lock across get() and retain() means an entry found
+    // here can't drop to zero references and be handed out as inBitmap while the caller shows it.
+    public Bitmap getAndRetain(String path, int width, int height) {
+        synchronized (cache) {
+            Bitmap bitmap = cache.get(key(path, width, height));
+            if (bitmap != null) bitmapPool.retain(bitmap);
+            return bitmap;
+        }
+    }
+
+    public void put(String path, int width, int height, Bitmap bitmap) {
+        if (bitmap == null) return;
+        bitmapPool.retain(bitmap);
+        cache.put(key(path, width, height), bitmap);
+    }
+
+    // Called from onTrimMemory: halve the cache when memory runs low, empty it under real pressure
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            cache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+        bitmapPool.trimMemory(level);
+    }
+
+    public float getHitRate() {
+        int requests = cache.hitCount() + cache.missCount();
+        return requests == 0 ? 0f : (float) cache.hitCount() / requests;
+    }
+
+    public String getStats() {
+        return "Bitmap cache " + (cache.size() / 1024) + "/" + (cache.maxSize() / 1024) + " KB, hits "
+                + cache.hitCount() + ", misses " + cache.missCount() + " (" + Math.round(getHitRate() * 100)
+                + "%), evictions " + cache.evictionCount();
+    }
+}
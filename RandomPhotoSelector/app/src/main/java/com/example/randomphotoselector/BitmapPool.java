@@ -0,0 +1,133 @@
+package com.example.randomphotoselector;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Free list of mutable bitmaps for BitmapFactory.Options.inBitmap, bucketed by allocation size.
+// Only bitmaps the pool handed out (or allocated through it) are tracked; each has a reference
+// count of its holders (the BitmapCache, the prefetch ring, the view showing it), and it returns
+// to the free list only when the last holder releases it. Anything else passed in is ignored.
+public class BitmapPool {
+
+    private static final int MEMORY_CLASS_FRACTION = 16;
+    private static final int MAX_SIZE_MULTIPLE = 2; // Don't reuse a bitmap more than twice the size needed
+
+    private static BitmapPool instance;
+
+    private final long maxBytes;
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> free = new TreeMap<>(); // byte count -> bitmaps
+    private final Map<Bitmap, Integer> references = new IdentityHashMap<>();
+    private long freeBytes = 0;
+    private long reused = 0;
+    private long allocated = 0;
+    private long allocatedBytes = 0;
+
+    public static synchronized BitmapPool getInstance(Context context) {
+        if (instance == null) {
+            instance = new BitmapPool(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private BitmapPool(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = activityManager != null ? activityManager.getMemoryClass() : 64;
+        maxBytes = (long) memoryClassMb * 1024 * 1024 / MEMORY_CLASS_FRACTION;
+    }
+
+    // A free bitmap of at least byteCount bytes to decode into, or null. The caller owns one
+    // reference to it and must hand it back through release().
+    public synchronized Bitmap get(int byteCount) {
+        Integer size = free.ceilingKey(byteCount);
+        if (size == null || size > (long) byteCount * MAX_SIZE_MULTIPLE) return null;
+        ArrayDeque<Bitmap> bucket = free.get(size);
+        Bitmap bitmap = bucket.poll();
+        if (bucket.isEmpty()) free.remove(size);
+        freeBytes -= size;
+        references.put(bitmap, 1);
+        reused++;
+        return bitmap;
+    }
+
+    // Starts tracking a bitmap decoded without a pooled target, with one reference for the caller
+    public synchronized void track(Bitmap bitmap) {
+        if (!isPoolable(bitmap) || references.containsKey(bitmap)) return;
+        references.put(bitmap, 1);
+        allocated++;
+        allocatedBytes += bitmap.getAllocationByteCount();
+    }
+
+    public synchronized void retain(Bitmap bitmap) {
+        Integer count = bitmap != null ? references.get(bitmap) : null;
+        if (count != null) references.put(bitmap, count + 1);
+    }
+
+    public synchronized void release(Bitmap bitmap) {
+        Integer count = bitmap != null ? references.get(bitmap) : null;
+        if (count == null) return;
+        if (count > 1) {
+            references.put(bitmap, count - 1);
+            return;
+        }
+        references.remove(bitmap);
+        int size = bitmap.getAllocationByteCount();
+        if (bitmap.isRecycled() || size > maxBytes) return;
+        ArrayDeque<Bitmap> bucket = free.get(size);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            free.put(size, bucket);
+        }
+        bucket.push(bitmap);
+        freeBytes += size;
+        trimToSize(maxBytes);
+    }
+
+    private static boolean isPoolable(Bitmap bitmap) {
+        return bitmap != null && bitmap.isMutable() && !bitmap.isRecycled()
+                && bitmap.getConfig() != null && !isHardware(bitmap);
+    }
+
+    private static boolean isHardware(Bitmap bitmap) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && bitmap.getConfig() == Bitmap.Config.HARDWARE;
+    }
+
+    // Drops the largest free bitmaps first; they are the least likely to fit a later decode
+    private void trimToSize(long targetBytes) {
+        while (freeBytes > targetBytes && !free.isEmpty()) {
+            Map.Entry<Integer, ArrayDeque<Bitmap>> largest = free.lastEntry();
+            Bitmap bitmap = largest.getValue().poll();
+            if (largest.getValue().isEmpty()) free.remove(largest.getKey());
+            freeBytes -= largest.getKey();
+            if (bitmap != null) bitmap.recycle();
+        }
+    }
+
+    public synchronized void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            trimToSize(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(maxBytes / 2);
+        }
+    }
+
+    public synchronized String getStats() {
+        int freeCount = 0;
+        for (ArrayDeque<Bitmap> bucket : free.values()) {
+            freeCount += bucket.size();
+        }
+        long decodes = reused + allocated;
+        long bytesPerDecode = decodes == 0 ? 0 : allocatedBytes / decodes;
+        return "Bitmap pool " + freeCount + " free (" + (freeBytes / 1024) + " KB), " + references.size()
+                + " in use, reused " + reused + ", allocated " + allocated + " (~" + (bytesPerDecode / 1024)
+                + " KB per decode)";
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.randomphotoselector;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Flipbook slideshow at sub-second intervals. Several decoders keep a small, fixed number of
+// screen-sized frames decoded or decoding; a Choreographer callback shows the next ready frame on
+// the first vsync of each slot. A slot with no frame ready is dropped, never made up later, so
+// a slow device shows fewer frames instead of building a backlog. All methods are main-thread
+// only.
+public class BurstPresenter implements Choreographer.FrameCallback {
+
+    private static final String TAG = "BurstPresenter";
+    private static final long SLOT_TOLERANCE_NANOS = 4_000_000; // Vsync jitter
+    private static final long STATS_PERIOD_NANOS = 1_000_000_000;
+    private static final double EWMA_ALPHA = 0.2;
+
+    public interface PathSupplier {
+        String next();
+    }
+
+    public interface FrameSink {
+        // Takes over the bitmap's pool reference
+        void show(String path, Bitmap bitmap);
+    }
+
+    private static class Frame {
+        final String path;
+        final Bitmap bitmap;
+
+        Frame(String path, Bitmap bitmap) {
+            this.path = path;
+            this.bitmap = bitmap;
+        }
+    }
+
+    private final PhotoDecoder decoder;
+    private final int decoderCount;
+    private final int maxFrames; // Ready plus decoding
+    private final ExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ArrayDeque<Frame> ready = new ArrayDeque<>();
+    private final ArrayDeque<Long> shownTimes = new ArrayDeque<>(); // Last second, for fps
+
+    private PathSupplier source;
+    private FrameSink sink;
+    private Runnable statsListener;
+    private long intervalNanos;
+    private int width, height;
+    private boolean running = false;
+    private int generation = 0;
+    private int decoding = 0;
+    private long nextSlotNanos;
+    private long lastStatsNanos;
+    private int shown, dropped;
+    private double decodeMsEwma = 0;
+
+    public BurstPresenter(PhotoDecoder decoder) {
+        this.decoder = decoder;
+        decoderCount = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        maxFrames = decoderCount + 2;
+        executor = Executors.newFixedThreadPool(decoderCount);
+    }
+
+    // Called about once a second while running
+    public void setOnStatsListener(Runnable listener) {
+        statsListener = listener;
+    }
+
+    public void start(PathSupplier source, FrameSink sink, long intervalMs, int width, int height) {
+        stop();
+        this.source = source;
+        this.sink = sink;
+        this.intervalNanos = intervalMs * 1_000_000;
+        this.width = width;
+        this.height = height;
+        running = true;
+        decoding = 0;
+        shown = 0;
+        dropped = 0;
+        shownTimes.clear();
+        nextSlotNanos = 0;
+        lastStatsNanos = 0;
+        topUp();
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    public void stop() {
+        if (!running) return;
+        running = false;
+        generation++; // Decodes still running are released when they land
+        Choreographer.getInstance().removeFrameCallback(this);
+        for (Frame frame : ready) {
+            decoder.release(frame.bitmap);
+        }
+        ready.clear();
+        Log.d(TAG, getStats());
+    }
+
+    public void shutdown() {
+        stop();
+        executor.shutdownNow();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) return;
+        if (nextSlotNanos == 0) {
+            nextSlotNanos = frameTimeNanos; // The first frame is due as soon as one is ready
+            lastStatsNanos = frameTimeNanos;
+        }
+        if (frameTimeNanos >= nextSlotNanos - SLOT_TOLERANCE_NANOS) {
+            Frame frame = ready.poll();
+            if (frame != null) {
+                shown++;
+                shownTimes.add(frameTimeNanos);
+                sink.show(frame.path, frame.bitmap);
+            } else if (shown > 0) {
+                dropped++;
+            }
+            // Stay on the slot grid; if several slots passed (app paused, long GC), restart from now
+            nextSlotNanos += intervalNanos;
+            if (nextSlotNanos < frameTimeNanos) nextSlotNanos = frameTimeNanos + intervalNanos;
+            topUp();
+        }
+        while (!shownTimes.isEmpty() && frameTimeNanos - shownTimes.peek() > STATS_PERIOD_NANOS) {
+            shownTimes.poll();
+        }
+        if (statsListener != null && frameTimeNanos - lastStatsNanos >= STATS_PERIOD_NANOS) {
+            lastStatsNanos = frameTimeNanos;
+            statsListener.run();
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void topUp() {
+        while (running && decoding + ready.size() < maxFrames) {
+            String path = source.next();
+            if (path == null) return;
+            decoding++;
+            int token = generation;
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                Bitmap bitmap = decoder.decodeScaled(path, width, height);
+                long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+                mainHandler.post(() -> onDecoded(token, path, bitmap, elapsedMs));
+            });
+        }
+    }
+
+    private void onDecoded(int token, String path, Bitmap bitmap, long elapsedMs) {
+        if (token != generation) {
+            decoder.release(bitmap);
+            return;
+        }
+        decoding--;
+        decodeMsEwma = decodeMsEwma == 0 ? elapsedMs : decodeMsEwma + EWMA_ALPHA * (elapsedMs - decodeMsEwma);
+        if (bitmap != null) {
+            ready.add(new Frame(path, bitmap));
+        }
+        topUp();
+    }
+
+    // Frames shown during the last second
+    public int getFps() {
+        return shownTimes.size();
+    }
+
+    public float getTargetFps() {
+        return intervalNanos == 0 ? 0f : 1e9f / intervalNanos;
+    }
+
+    // Decodes running or queued behind the decoder threads
+    public int getBacklog() {
+        return decoding;
+    }
+
+    public String getStats() {
+        return String.format(Locale.US, "Burst %d/%.1f fps, backlog %d, ready %d, shown %d, dropped %d, decode ~%dms on %d threads",
+                getFps(), getTargetFps(), getBacklog(), ready.size(), shown, dropped, Math.round(decodeMsEwma),
+                decoderCount);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.randomphotoselector;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+// Rewrites the videos VideoMetadataCache recorded as moov-at-end into faststart layout, so
+// ExoPlayer can start them without seeking to the tail first. Opt-in via KEY_ENABLED.
+public class FaststartWorker extends Worker {
+
+    private static final String TAG = "FaststartWorker";
+    public static final String KEY_ENABLED = "faststart_enabled"; // In AppSettings
+    private static final String KEY_SKIPPED = "faststart_skipped"; // Paths the rewrite gave up on
+
+    public FaststartWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        SharedPreferences prefs = AppSettings.get(context);
+        if (!prefs.getBoolean(KEY_ENABLED, false)) {
+            return Result.success();
+        }
+        Set<String> skippedPaths = new HashSet<>(prefs.getStringSet(KEY_SKIPPED, new HashSet<>()));
+
+        VideoMetadataCache cache = VideoMetadataCache.getInstance(context);
+        int rewritten = 0;
+        for (String path : cache.getMoovAtEndPaths()) {
+            if (isStopped()) break;
+            File file = new File(path);
+            if (!file.isFile() || skippedPaths.contains(path)) continue;
+            try {
+                long start = System.currentTimeMillis();
+                if (Mp4Faststart.rewrite(file)) {
+                    rewritten++;
+                    cache.invalidate(path); // Re-extracted as faststart on the next lookup
+                    Log.d(TAG, "Rewrote " + path + " in " + (System.currentTimeMillis() - start) + "ms");
+                } else {
+                    skippedPaths.add(path);
+                    Log.w(TAG, "Left " + path + " as is");
+                }
+            } catch (Exception e) {
+                skippedPaths.add(path);
+                Log.e(TAG, "Failed to rewrite " + path, e);
+            }
+        }
+        prefs.edit().putStringSet(KEY_SKIPPED, skippedPaths).apply();
+        Log.d(TAG, "Rewrote " + rewritten + " files, " + skippedPaths.size() + " skipped so far");
+        return Result.success();
+    }
+}
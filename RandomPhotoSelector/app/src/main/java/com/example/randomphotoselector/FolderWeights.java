@@ -0,0 +1,55 @@
+package com.example.randomphotoselector;
+
+import android.content.SharedPreferences;
+
+import java.io.File;
+
+// How much each per-item signal moves the weight of an item in one folder. Defaults differ per
+// folder and can be overridden in the "selection_weights" preferences as <folder>.<field>.
+// Favourites have no multiplier: marking one moves it to Fav, where every item is a favourite.
+public class FolderWeights {
+
+    public static final String PREFS_NAME = "selection_weights";
+
+    private static final float MIN_WEIGHT = 0.01f;
+
+    public final float playCount;        // Per ln(1 + plays); negative favours less-played items
+    public final float recencyPenalty;   // Fraction of the weight removed right after a play
+    public final long recencyHalfLifeMs; // Time for the recency penalty to halve
+
+    public FolderWeights(float playCount, float recencyPenalty, long recencyHalfLifeMs) {
+        this.playCount = playCount;
+        this.recencyPenalty = recencyPenalty;
+        this.recencyHalfLifeMs = recencyHalfLifeMs;
+    }
+
+    public static FolderWeights defaults(String folderName) {
+        if ("Desi".equals(folderName) || "Foreign".equals(folderName)) {
+            return new FolderWeights(-0.3f, 0.9f, 6 * 60 * 60 * 1000L);
+        } else if ("Fav".equals(folderName)) {
+            return new FolderWeights(-0.2f, 0.95f, 12 * 60 * 60 * 1000L);
+        } else if ("Photos".equals(folderName)) {
+            return new FolderWeights(-0.1f, 0.8f, 60 * 60 * 1000L);
+        }
+        return new FolderWeights(0f, 0f, 60 * 60 * 1000L);
+    }
+
+    public static FolderWeights load(SharedPreferences prefs, String folderPath) {
+        String name = new File(folderPath).getName();
+        FolderWeights defaults = defaults(name);
+        return new FolderWeights(
+                prefs.getFloat(name + ".playCount", defaults.playCount),
+                prefs.getFloat(name + ".recencyPenalty", defaults.recencyPenalty),
+                prefs.getLong(name + ".recencyHalfLifeMs", defaults.recencyHalfLifeMs));
+    }
+
+    public double weightOf(MediaCatalog.MediaSignals signals, long now) {
+        double weight = Math.max(0, signals.boost);
+        weight *= Math.max(0.1, 1 + playCount * Math.log1p(signals.playCount));
+        if (signals.lastPlayed > 0 && recencyHalfLifeMs > 0) {
+            long age = Math.max(0, now - signals.lastPlayed);
+            weight *= 1 - recencyPenalty * Math.pow(2, -(double) age / recencyHalfLifeMs);
+        }
+        return Math.max(MIN_WEIGHT, weight);
+    }
+}
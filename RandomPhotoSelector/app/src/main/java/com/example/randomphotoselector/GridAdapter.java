@@ -0,0 +1,143 @@
+package com.example.randomphotoselector;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Square thumbnail grid over one catalog folder. Paths stream in pages from MediaCatalog as the
+// grid nears the end of what is loaded, so a folder of any size opens with a single small query.
+// Thumbnails (photos, or a frame for videos) come from ThumbnailStore with the same cancellable
+// per-holder requests as ImageAdapter.
+public class GridAdapter extends RecyclerView.Adapter<GridAdapter.GridViewHolder> {
+
+    private static final int PAGE_SIZE = 200;
+
+    public interface OnItemClickListener {
+        void onItemClick(String path, int mediaType);
+    }
+
+    private static final ExecutorService pageExecutor = Executors.newSingleThreadExecutor();
+
+    private final Context context;
+    private final MediaCatalog catalog;
+    private final String folderPath;
+    private final int mediaType;
+    private final int spanCount;
+    private final OnItemClickListener listener;
+    private final ThumbnailStore thumbnailStore;
+    private final BitmapCache bitmapCache;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<String> paths = new ArrayList<>();
+    private boolean loading = false;
+    private boolean endReached = false;
+
+    public GridAdapter(Context context, MediaCatalog catalog, String folderPath, int mediaType, int spanCount,
+                       OnItemClickListener listener) {
+        this.context = context;
+        this.catalog = catalog;
+        this.folderPath = folderPath;
+        this.mediaType = mediaType;
+        this.spanCount = Math.max(1, spanCount);
+        this.listener = listener;
+        this.thumbnailStore = ThumbnailStore.getInstance(context);
+        this.bitmapCache = BitmapCache.getInstance(context);
+        setHasStableIds(true);
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (loading || endReached) return;
+        loading = true;
+        String after = paths.isEmpty() ? null : paths.get(paths.size() - 1);
+        pageExecutor.execute(() -> {
+            List<String> page = catalog.getPathsPage(folderPath, mediaType, after, PAGE_SIZE);
+            mainHandler.post(() -> {
+                loading = false;
+                if (page.size() < PAGE_SIZE) endReached = true;
+                if (page.isEmpty()) return;
+                int start = paths.size();
+                paths.addAll(page);
+                notifyItemRangeInserted(start, page.size());
+            });
+        });
+    }
+
+    @NonNull
+    @Override
+    public GridViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_grid, parent, false);
+        // Square cells: the span divides the grid width evenly
+        int width = parent.getWidth() > 0 ? parent.getWidth() : context.getResources().getDisplayMetrics().widthPixels;
+        view.getLayoutParams().height = width / spanCount;
+        return new GridViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull GridViewHolder holder, int position) {
+        holder.cancel();
+        if (position >= paths.size() - PAGE_SIZE / 2) {
+            loadNextPage();
+        }
+        String path = paths.get(position);
+        holder.videoBadge.setVisibility(mediaType == MediaCatalog.TYPE_VIDEO ? View.VISIBLE : View.GONE);
+        holder.itemView.setOnClickListener(v -> listener.onItemClick(path, mediaType));
+
+        Bitmap bitmap = bitmapCache.get(path, ThumbnailStore.SIZE_SMALL, 0);
+        holder.thumbnailView.setImageBitmap(bitmap);
+        if (bitmap != null) return;
+
+        holder.request = thumbnailStore.request(path, ThumbnailStore.SIZE_SMALL, (requestedPath, thumbnail) -> {
+            holder.request = null;
+            if (thumbnail == null) return;
+            bitmapCache.put(requestedPath, ThumbnailStore.SIZE_SMALL, 0, thumbnail);
+            holder.thumbnailView.setImageBitmap(thumbnail);
+        });
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull GridViewHolder holder) {
+        holder.cancel();
+        holder.thumbnailView.setImageDrawable(null);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return ImageAdapter.pathId(paths.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return paths.size();
+    }
+
+    public static class GridViewHolder extends RecyclerView.ViewHolder {
+        ImageView thumbnailView;
+        TextView videoBadge;
+        ThumbnailStore.Request request;
+
+        public GridViewHolder(@NonNull View itemView) {
+            super(itemView);
+            thumbnailView = itemView.findViewById(R.id.thumbnailView);
+            videoBadge = itemView.findViewById(R.id.videoBadge);
+        }
+
+        void cancel() {
+            if (request != null) {
+                request.cancel();
+                request = null;
+            }
+        }
+    }
+}
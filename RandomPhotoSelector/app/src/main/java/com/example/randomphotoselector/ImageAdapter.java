@@ -2,24 +2,52 @@ package com.example.randomphotoselector;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import java.util.List;
 
+// Binds thumbnails asynchronously: a holder keeps the ThumbnailStore request for its current
+// item and cancels it when rebound or recycled, so a fling never waits on disk or a decode and
+// late results never land in the wrong row. While scrolling, the next screen's thumbnails are
+// loaded into the BitmapCache so they bind synchronously when they scroll in.
 public class ImageAdapter extends RecyclerView.Adapter<ImageAdapter.ImageViewHolder> {
 
     private final Context context;
     private final List<String> imagePaths;
+    private final BitmapCache bitmapCache;
+    private final ThumbnailStore thumbnailStore;
+    private int warmedFrom = Integer.MAX_VALUE; // Positions already warmed, [warmedFrom, warmedTo)
+    private int warmedTo = Integer.MIN_VALUE;
+
+    private final RecyclerView.OnScrollListener warmListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) return;
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            int first = layoutManager.findFirstVisibleItemPosition();
+            int last = layoutManager.findLastVisibleItemPosition();
+            if (first == RecyclerView.NO_POSITION) return;
+            int screen = last - first + 1;
+            if (dy >= 0) {
+                warm(last + 1, last + 1 + screen);
+            } else {
+                warm(first - screen, first);
+            }
+        }
+    };
 
     public ImageAdapter(Context context, List<String> imagePaths) {
         this.context = context;
         this.imagePaths = imagePaths;
+        this.bitmapCache = BitmapCache.getInstance(context);
+        this.thumbnailStore = ThumbnailStore.getInstance(context);
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -31,10 +59,50 @@ public class ImageAdapter extends RecyclerView.Adapter<ImageAdapter.ImageViewHol
 
     @Override
     public void onBindViewHolder(@NonNull ImageViewHolder holder, int position) {
-        String imagePath = imagePaths.get(position);
-        Uri photoUri = Uri.parse(imagePath);
-        Bitmap bitmap = BitmapFactory.decodeFile(photoUri.getPath());
+        holder.cancel();
+        String imagePath = pathAt(position);
+        // Only thumbnails are shown here; a memory hit binds at once, anything else loads async
+        Bitmap bitmap = bitmapCache.get(imagePath, ThumbnailStore.SIZE_LARGE, 0);
         holder.imageView.setImageBitmap(bitmap);
+        if (bitmap != null) return;
+
+        holder.request = thumbnailStore.request(imagePath, ThumbnailStore.SIZE_LARGE, (path, thumbnail) -> {
+            holder.request = null;
+            if (thumbnail == null) return;
+            bitmapCache.put(path, ThumbnailStore.SIZE_LARGE, 0, thumbnail);
+            holder.imageView.setImageBitmap(thumbnail);
+        });
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ImageViewHolder holder) {
+        holder.cancel();
+        holder.imageView.setImageDrawable(null);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(warmListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(warmListener);
+    }
+
+    // Paths are unique within the list, so a 64-bit FNV-1a hash of the path is a stable id
+    @Override
+    public long getItemId(int position) {
+        return pathId(imagePaths.get(position));
+    }
+
+    static long pathId(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 
     @Override
@@ -42,12 +110,41 @@ public class ImageAdapter extends RecyclerView.Adapter<ImageAdapter.ImageViewHol
         return imagePaths.size();
     }
 
+    private String pathAt(int position) {
+        return Uri.parse(imagePaths.get(position)).getPath();
+    }
+
+    // Loads thumbnails for positions [from, to) into the BitmapCache, skipping the warmed range
+    private void warm(int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(getItemCount(), to);
+        for (int position = from; position < to; position++) {
+            if (position >= warmedFrom && position < warmedTo) continue;
+            String imagePath = pathAt(position);
+            if (bitmapCache.get(imagePath, ThumbnailStore.SIZE_LARGE, 0) != null) continue;
+            thumbnailStore.request(imagePath, ThumbnailStore.SIZE_LARGE, (path, thumbnail) ->
+                    bitmapCache.put(path, ThumbnailStore.SIZE_LARGE, 0, thumbnail));
+        }
+        if (from < to) {
+            warmedFrom = Math.min(warmedFrom, from);
+            warmedTo = Math.max(warmedTo, to);
+        }
+    }
+
     public static class ImageViewHolder extends RecyclerView.ViewHolder {
         ImageView imageView;
+        ThumbnailStore.Request request;
 
         public ImageViewHolder(@NonNull View itemView) {
             super(itemView);
             imageView = itemView.findViewById(R.id.imageView);
         }
+
+        void cancel() {
+            if (request != null) {
+                request.cancel();
+                request = null;
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,259 @@
+package com.example.randomphotoselector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Reads width, height and EXIF orientation from the file header alone (JPEG SOF/APP1, PNG IHDR,
+// GIF, BMP, WebP VP8/VP8L/VP8X) without allocating any pixels. Results are cached per path and
+// revalidated against size + mtime. Plain Java, no Android dependencies.
+public final class ImageHeaderProbe {
+
+    public static final int ORIENTATION_NORMAL = 1;
+
+    private static final int HEADER_READ = 64;         // Enough for every fixed header below
+    private static final int MAX_JPEG_SCAN = 256 * 1024; // SOF normally sits within the first few KB
+    private static final int CACHE_SIZE = 4096;
+
+    public static class ImageInfo {
+        public final String format; // "jpeg", "png", "gif", "bmp" or "webp"
+        public final int width;     // As stored, before orientation is applied
+        public final int height;
+        public final int orientation; // EXIF orientation 1-8
+        final long size;
+        final long mtime;
+
+        ImageInfo(String format, int width, int height, int orientation, long size, long mtime) {
+            this.format = format;
+            this.width = width;
+            this.height = height;
+            this.orientation = orientation;
+            this.size = size;
+            this.mtime = mtime;
+        }
+
+        // Orientations 5-8 swap the axes
+        public boolean isTransposed() {
+            return orientation >= 5 && orientation <= 8;
+        }
+
+        public int displayWidth() {
+            return isTransposed() ? height : width;
+        }
+
+        public int displayHeight() {
+            return isTransposed() ? width : height;
+        }
+
+        public boolean isPortrait() {
+            return displayHeight() > displayWidth();
+        }
+
+        // Clockwise rotation needed to display upright, ignoring mirroring
+        public int rotationDegrees() {
+            switch (orientation) {
+                case 3:
+                case 4:
+                    return 180;
+                case 5:
+                case 6:
+                    return 90;
+                case 7:
+                case 8:
+                    return 270;
+                default:
+                    return 0;
+            }
+        }
+
+        public boolean isMirrored() {
+            return orientation == 2 || orientation == 4 || orientation == 5 || orientation == 7;
+        }
+    }
+
+    private static final Map<String, ImageInfo> cache = new LinkedHashMap<String, ImageInfo>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ImageInfo> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private ImageHeaderProbe() {
+    }
+
+    // Cached probe; returns null for unreadable or unrecognised files
+    public static ImageInfo get(String path) {
+        File file = new File(path);
+        long size = file.length();
+        long mtime = file.lastModified();
+        synchronized (cache) {
+            ImageInfo cached = cache.get(path);
+            if (cached != null && cached.size == size && cached.mtime == mtime) return cached;
+        }
+        ImageInfo info;
+        try {
+            info = probe(file);
+        } catch (IOException e) {
+            return null;
+        }
+        if (info != null) {
+            synchronized (cache) {
+                cache.put(path, info);
+            }
+        }
+        return info;
+    }
+
+    public static ImageInfo probe(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            long mtime = file.lastModified();
+            ByteBuffer header = read(channel, 0, HEADER_READ);
+            if (header.remaining() < 12) return null;
+
+            int b0 = header.get(0) & 0xff, b1 = header.get(1) & 0xff;
+            if (b0 == 0xff && b1 == 0xd8) {
+                return probeJpeg(channel, size, mtime);
+            }
+            if (b0 == 0x89 && header.getInt(0) == 0x89504e47 && header.remaining() >= 24) {
+                // Signature, then the IHDR chunk: length, type, width, height
+                return new ImageInfo("png", header.getInt(16), header.getInt(20), ORIENTATION_NORMAL, size, mtime);
+            }
+            if (b0 == 'G' && b1 == 'I' && (header.get(2) & 0xff) == 'F') {
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                return new ImageInfo("gif", header.getShort(6) & 0xffff, header.getShort(8) & 0xffff,
+                        ORIENTATION_NORMAL, size, mtime);
+            }
+            if (b0 == 'B' && b1 == 'M' && header.remaining() >= 26) {
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                int headerSize = header.getInt(14);
+                if (headerSize == 12) { // OS/2 BITMAPCOREHEADER uses 16-bit dimensions
+                    return new ImageInfo("bmp", header.getShort(18) & 0xffff, header.getShort(20) & 0xffff,
+                            ORIENTATION_NORMAL, size, mtime);
+                }
+                // Negative height means a top-down bitmap
+                return new ImageInfo("bmp", Math.abs(header.getInt(18)), Math.abs(header.getInt(22)),
+                        ORIENTATION_NORMAL, size, mtime);
+            }
+            if (header.getInt(0) == 0x52494646 && header.getInt(8) == 0x57454250) { // "RIFF" .... "WEBP"
+                return probeWebp(header, size, mtime);
+            }
+            return null;
+        }
+    }
+
+    private static ImageInfo probeWebp(ByteBuffer header, long size, long mtime) {
+        if (header.remaining() < 30) return null;
+        int chunk = header.getInt(12);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        switch (chunk) {
+            case 0x56503820: // "VP8 ": lossy, 14-bit dimensions after the frame tag and start code
+                return new ImageInfo("webp", header.getShort(26) & 0x3fff, header.getShort(28) & 0x3fff,
+                        ORIENTATION_NORMAL, size, mtime);
+            case 0x5650384c: { // "VP8L": lossless, 14-bit width-1 and height-1 packed after 0x2f
+                if ((header.get(20) & 0xff) != 0x2f) return null;
+                int bits = header.getInt(21);
+                return new ImageInfo("webp", (bits & 0x3fff) + 1, ((bits >>> 14) & 0x3fff) + 1,
+                        ORIENTATION_NORMAL, size, mtime);
+            }
+            case 0x56503858: { // "VP8X": extended, 24-bit canvas width-1 and height-1
+                int width = (header.get(24) & 0xff) | (header.get(25) & 0xff) << 8 | (header.get(26) & 0xff) << 16;
+                int height = (header.get(27) & 0xff) | (header.get(28) & 0xff) << 8 | (header.get(29) & 0xff) << 16;
+                return new ImageInfo("webp", width + 1, height + 1, ORIENTATION_NORMAL, size, mtime);
+            }
+            default:
+                return null;
+        }
+    }
+
+    // Walks JPEG marker segments up to the first SOF, picking up the EXIF orientation on the way
+    private static ImageInfo probeJpeg(FileChannel channel, long size, long mtime) throws IOException {
+        long position = 2;
+        int orientation = ORIENTATION_NORMAL;
+        long limit = Math.min(size, MAX_JPEG_SCAN);
+        while (position + 4 <= limit) {
+            ByteBuffer marker = read(channel, position, 4);
+            if (marker.remaining() < 4 || (marker.get(0) & 0xff) != 0xff) return null;
+            int type = marker.get(1) & 0xff;
+            if (type == 0xff) { // Fill byte
+                position++;
+                continue;
+            }
+            if (type == 0xd8 || (type >= 0xd0 && type <= 0xd7) || type == 0x01) { // No payload
+                position += 2;
+                continue;
+            }
+            if (type == 0xd9 || type == 0xda) return null; // End of image or start of scan before any SOF
+            int length = marker.getShort(2) & 0xffff;
+            if (length < 2) return null;
+
+            if (type >= 0xc0 && type <= 0xcf && type != 0xc4 && type != 0xc8 && type != 0xcc) {
+                // SOFn: length, precision, height, width
+                ByteBuffer sof = read(channel, position + 4, 5);
+                if (sof.remaining() < 5) return null;
+                int height = sof.getShort(1) & 0xffff;
+                int width = sof.getShort(3) & 0xffff;
+                return new ImageInfo("jpeg", width, height, orientation, size, mtime);
+            }
+            if (type == 0xe1 && length >= 16) {
+                int exifOrientation = readExifOrientation(channel, position + 4, length - 2);
+                if (exifOrientation > 0) orientation = exifOrientation;
+            }
+            position += 2 + length;
+        }
+        return null;
+    }
+
+    // APP1 payload: "Exif\0\0" then a TIFF header and IFD0. Returns 0 if there is no orientation tag.
+    private static int readExifOrientation(FileChannel channel, long start, int length) throws IOException {
+        ByteBuffer exif = read(channel, start, Math.min(length, 64 * 1024));
+        if (exif.remaining() < 14 || exif.getInt(0) != 0x45786966 || exif.getShort(4) != 0) return 0;
+        int tiff = 6;
+        short byteOrder = exif.getShort(tiff);
+        if (byteOrder == 0x4949) {
+            exif.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (byteOrder != 0x4d4d) {
+            return 0;
+        }
+        if ((exif.getShort(tiff + 2) & 0xffff) != 42) return 0;
+        long ifd = tiff + (exif.getInt(tiff + 4) & 0xffffffffL);
+        if (ifd + 2 > exif.remaining()) return 0;
+        int entries = exif.getShort((int) ifd) & 0xffff;
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > exif.remaining()) return 0;
+            if ((exif.getShort(entry) & 0xffff) == 0x0112) {
+                int value = exif.getShort(entry + 8) & 0xffff;
+                return value >= 1 && value <= 8 ? value : 0;
+            }
+        }
+        return 0;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) break;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // Largest power-of-two subsampling that keeps the decoded image at least reqWidth x reqHeight
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 && reqHeight <= 0) return inSampleSize;
+        while ((reqWidth <= 0 || width / (inSampleSize * 2) >= reqWidth)
+                && (reqHeight <= 0 || height / (inSampleSize * 2) >= reqHeight)) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+}
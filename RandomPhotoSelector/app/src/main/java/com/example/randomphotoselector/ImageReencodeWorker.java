@@ -0,0 +1,192 @@
+package com.example.randomphotoselector;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ColorSpace;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Re-encodes large PNG/BMP photos, which are slow to decode, into lossless WebP. Only plain 8-bit
+// sRGB sources are touched, since WebP would drop 16-bit samples, ICC/gamma chunks and text or
+// EXIF metadata. The copy replaces the original under the new extension only once it decodes to
+// exactly the same unpremultiplied pixels; the catalog row moves with it and keeps the old
+// extension in original_ext. Opt-in via KEY_ENABLED (confirmed in a dialog), Android 10+ only
+// (older encoders are lossy at any quality) and only runs while charging.
+public class ImageReencodeWorker extends Worker {
+
+    private static final String TAG = "ImageReencodeWorker";
+    public static final String KEY_FOLDERS = "folders";
+    public static final String KEY_ENABLED = "reencode_enabled"; // In AppSettings
+    private static final String KEY_SKIPPED = "reencode_skipped";
+    private static final long MIN_FILE_BYTES = 4L * 1024 * 1024;
+    // PNG chunks whose meaning WebP cannot carry: animation, colour management and metadata
+    private static final List<String> LOSSY_PNG_CHUNKS = Arrays.asList(
+            "acTL", "iCCP", "gAMA", "cHRM", "tEXt", "zTXt", "iTXt", "eXIf");
+
+    public ImageReencodeWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        SharedPreferences prefs = AppSettings.get(context);
+        String[] folders = getInputData().getStringArray(KEY_FOLDERS);
+        if (!prefs.getBoolean(KEY_ENABLED, false) || folders == null
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return Result.success();
+        }
+        Set<String> skippedPaths = new HashSet<>(prefs.getStringSet(KEY_SKIPPED, new HashSet<>()));
+
+        MediaCatalog catalog = MediaCatalog.getInstance(context);
+        int reencoded = 0;
+        for (String folder : folders) {
+            for (String path : catalog.getPaths(folder, MediaCatalog.TYPE_PHOTO)) {
+                if (isStopped()) break;
+                String lowerPath = path.toLowerCase();
+                if (!lowerPath.endsWith(".png") && !lowerPath.endsWith(".bmp")) continue;
+                File file = new File(path);
+                if (!file.isFile() || file.length() < MIN_FILE_BYTES || skippedPaths.contains(path)) continue;
+                try {
+                    long start = System.currentTimeMillis();
+                    File replacement = reencode(file);
+                    if (replacement != null) {
+                        catalog.replaceFile(path, replacement.getAbsolutePath(), path.substring(path.lastIndexOf('.')));
+                        reencoded++;
+                        Log.d(TAG, "Re-encoded " + path + " to " + replacement.getName() + " in "
+                                + (System.currentTimeMillis() - start) + "ms");
+                    } else {
+                        skippedPaths.add(path);
+                    }
+                } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                    skippedPaths.add(path);
+                    Log.e(TAG, "Failed to re-encode " + path + ": " + e);
+                }
+            }
+        }
+        prefs.edit().putStringSet(KEY_SKIPPED, skippedPaths).apply();
+        Log.d(TAG, "Re-encoded " + reencoded + " files, " + skippedPaths.size() + " skipped so far");
+        return Result.success();
+    }
+
+    // Returns the new file, or null if the original was left alone
+    private static File reencode(File file) throws IOException {
+        if (!isPlainSource(file)) return null;
+        String name = file.getName();
+        File target = new File(file.getParentFile(), name.substring(0, name.lastIndexOf('.')) + ".webp");
+        if (target.exists()) return null;
+
+        // Unpremultiplied, so semi-transparent pixels compare by their stored values
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPremultiplied = false;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap source = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        if (source == null) return null;
+        File temp = new File(file.getParentFile(), "." + name + ".reencode.tmp");
+        boolean verified = false;
+        try {
+            if (source.getConfig() != Bitmap.Config.ARGB_8888 || !isSrgb(options.outColorSpace)) return null;
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                if (!source.compress(losslessWebp(), 100, out)) {
+                    throw new IOException("Encoder refused " + name);
+                }
+            }
+            if (temp.length() >= file.length()) return null;
+
+            // Every pixel of the copy must match before the original goes
+            Bitmap copy = BitmapFactory.decodeFile(temp.getAbsolutePath(), options);
+            if (copy == null) return null;
+            verified = source.sameAs(copy);
+            copy.recycle();
+            if (!verified) Log.d(TAG, "Copy of " + name + " differs, keeping the original");
+        } finally {
+            source.recycle();
+            if (!verified) temp.delete();
+        }
+        if (!verified) return null;
+
+        temp.setLastModified(file.lastModified()); // Keeps its place in date-sorted views
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            return null;
+        }
+        if (!file.delete()) {
+            target.delete();
+            return null;
+        }
+        return target;
+    }
+
+    // 8-bit PNG without animation, colour or metadata chunks, or a BMP with a plain
+    // BITMAPINFOHEADER/BITMAPCOREHEADER (V4/V5 headers carry colour spaces)
+    private static boolean isPlainSource(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] signature = new byte[8];
+            in.readFully(signature);
+            if (signature[0] == 'B' && signature[1] == 'M') {
+                in.skipBytes(6);
+                int headerSize = Integer.reverseBytes(in.readInt());
+                return headerSize == 12 || headerSize == 40;
+            }
+            if ((signature[0] & 0xff) != 0x89 || signature[1] != 'P' || signature[2] != 'N' || signature[3] != 'G') {
+                return false;
+            }
+            byte[] type = new byte[4];
+            while (true) {
+                long length = in.readInt() & 0xffffffffL;
+                in.readFully(type);
+                String chunk = new String(type, StandardCharsets.US_ASCII);
+                if (chunk.equals("IDAT")) return true;
+                if (LOSSY_PNG_CHUNKS.contains(chunk)) return false;
+                if (chunk.equals("IHDR")) {
+                    in.skipBytes(8);
+                    if (in.readUnsignedByte() > 8) return false; // 16-bit samples
+                    length -= 9;
+                }
+                skipFully(in, length + 4); // Rest of the chunk and its CRC
+            }
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private static void skipFully(DataInputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) throw new EOFException();
+            count -= skipped;
+        }
+    }
+
+    // Decoders report null when the file carries no colour space of its own
+    private static boolean isSrgb(ColorSpace colorSpace) {
+        return colorSpace == null || colorSpace.equals(ColorSpace.get(ColorSpace.Named.SRGB));
+    }
+
+    // quality 100 selects lossless for the legacy WEBP format on Android 10+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat losslessWebp() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.WEBP;
+    }
+}
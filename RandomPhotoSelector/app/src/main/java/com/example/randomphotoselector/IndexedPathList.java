@@ -0,0 +1,49 @@
+package com.example.randomphotoselector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Path list with O(1) add, remove, contains and random access. Removal swaps the last element
+// into the freed slot, so insertion order is not preserved.
+public class IndexedPathList {
+
+    private final List<String> paths = new ArrayList<>();
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    public boolean add(String path) {
+        if (indexes.containsKey(path)) return false;
+        indexes.put(path, paths.size());
+        paths.add(path);
+        return true;
+    }
+
+    public boolean remove(String path) {
+        Integer index = indexes.remove(path);
+        if (index == null) return false;
+        int lastIndex = paths.size() - 1;
+        String last = paths.remove(lastIndex);
+        if (index != lastIndex) {
+            paths.set(index, last);
+            indexes.put(last, index);
+        }
+        return true;
+    }
+
+    public boolean contains(String path) {
+        return indexes.containsKey(path);
+    }
+
+    public String get(int index) {
+        return paths.get(index);
+    }
+
+    public int size() {
+        return paths.size();
+    }
+
+    public List<String> toList() {
+        return new ArrayList<>(paths);
+    }
+}
@@ -5,12 +5,12 @@ import android.annotation.SuppressLint;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.ActivityInfo;
 import android.content.pm.PackageManager;
 import android.content.res.ColorStateList;
 import android.content.res.Configuration;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
@@ -48,6 +48,7 @@ import android.widget.VideoView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.OptIn;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
@@ -58,12 +59,10 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.documentfile.provider.DocumentFile;
 import androidx.lifecycle.Observer;
+import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.android.exoplayer2.ExoPlayer;
-import com.google.android.exoplayer2.MediaItem;
-import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.ui.PlayerView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -78,9 +77,12 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -89,8 +91,11 @@ import androidx.camera.core.ExperimentalGetImage;
 
 import android.view.ScaleGestureDetector;
 
+import androidx.work.Constraints;
 import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
 import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkContinuation;
 import androidx.work.WorkInfo;
 import androidx.work.WorkManager;
 
@@ -141,20 +146,34 @@ public class MainActivity extends AppCompatActivity {
 
     private ImageView randomImageView;
     private PlayerView playerView;
-    private ExoPlayer exoPlayer;
+    private PlaybackController playbackController;
+    private final SkipCoalescer skipCoalescer = new SkipCoalescer(this::skipVideos);
     private RecyclerView recyclerView;
     private ImageButton muteButton;
 
     private RandomVideoSelector randomVideoSelector;
     private RandomPhotoSelector randomPhotoSelector;
-    private Random random;
+    private MediaCatalog mediaCatalog;
+    private VideoMetadataCache videoMetadataCache;
+    private PhotoDecoder photoDecoder;
+    private PhotoPrefetcher photoPrefetcher;
+    private BurstPresenter burstPresenter;
+    private PhotoTransition photoTransition;
+    private Bitmap currentPhotoBitmap; // Holds a BitmapPool reference while shown
+    private String currentPhotoPath;
+    private TiledImageView tiledImageView;
+    private String gridFolderPath;
+    private int gridMediaType = MediaCatalog.TYPE_PHOTO;
+    private MediaLibraryObserver mediaLibraryObserver;
+    private Random random = new Random();
     private Handler handler = new Handler();
     private Runnable autoRandomRunnable;
     private boolean isAutoRandomRunning = false;
     private List shuffledVideoPaths = new ArrayList<>();
     private List shuffledPhotoPaths = new ArrayList<>();
-    private int currentVideoIndex = 0;
-    private int currentPhotoIndex = 0;
+    private final Map<String, ShuffleBag> shuffleBags = new HashMap<>(); // folder path -> bag
+    private final Map<String, WeightedSelector> weightedSelectors = new HashMap<>(); // folder path -> selector
+    private SharedPreferences shuffleBagPrefs;
     private String videoDirectoryPath;
     private String photoDirectoryPath;
     private String filesDirectoryPath;
@@ -197,6 +216,11 @@ public class MainActivity extends AppCompatActivity {
 
     private static final int DELETION_TIMEOUT = 5000; // 5 seconds timeout
     private static final String TAG = "MainActivity";
+    private static final int INITIAL_THUMBNAIL_ITEMS = 8; // Thumbnails generated before the list scrolls
+    private static final String KEY_GRID_SPAN = "grid_span"; // In AppSettings
+    private static final int MIN_GRID_SPAN = 2;
+    private static final int MAX_GRID_SPAN = 5;
+    private static final int DEFAULT_GRID_SPAN = 3;
 
     private MediaSession mediaSession;
 
@@ -205,8 +229,9 @@ public class MainActivity extends AppCompatActivity {
     private Button playbackSpeedButton; // Reference to the playback speed button
 
     private Button intervalButton;
-    private int[] intervals = {1, 2, 3, 4, 5}; // Available intervals in seconds
-    private int currentIntervalIndex = 4; // Default to 5 seconds
+    private long[] intervals = {100, 150, 200, 1000, 2000, 3000, 4000, 5000}; // Available intervals in ms
+    private int currentIntervalIndex = 7; // Default to 5 seconds
+    private static final long BURST_INTERVAL_MS = 1000; // Shorter intervals flip through photos in burst mode
     private Handler photoChangeHandler = new Handler(); // Handler for changing photos
     private Runnable photoChangeRunnable;
 
@@ -220,7 +245,6 @@ public class MainActivity extends AppCompatActivity {
     private String currentlyPlayingVideoPath = null;
 
     private boolean isFavMode = false;
-    private List<String> favVideoPaths = new ArrayList<>();
 
     // Add to your class fields
     private String pendingFavMovePath = null;
@@ -242,12 +266,12 @@ public class MainActivity extends AppCompatActivity {
                     switch (keyEvent.getKeyCode()) {
                         case KeyEvent.KEYCODE_MEDIA_NEXT:
                             Log.d("MediaSession", "Next video gesture detected");
-                            playNextRandomVideo();
+                            skipCoalescer.skip(1);
                             return true;
     
                         case KeyEvent.KEYCODE_MEDIA_PREVIOUS:
                             Log.d("MediaSession", "Previous video gesture detected");
-                            playPreviousRandomVideo();
+                            skipCoalescer.skip(-1);
                             return true;
     
                         default:
@@ -272,12 +296,22 @@ public class MainActivity extends AppCompatActivity {
     private void changePlaybackSpeed() {
         currentSpeedIndex = (currentSpeedIndex + 1) % playbackSpeeds.length;
         float newSpeed = playbackSpeeds[currentSpeedIndex];
-        if (exoPlayer != null) {
-            exoPlayer.setPlaybackParameters(new PlaybackParameters(newSpeed));
+        if (playbackController != null) {
+            playbackController.setSpeed(newSpeed);
         }
         playbackSpeedButton.setText(String.format(Locale.getDefault(), "%.2fx", newSpeed));
     }
 
+    // Each profile shows its measured time to first frame, so the best one can be picked per device,
+    // along with how many prepares recent actions cost
+    private void cycleLoadProfile() {
+        if (playbackController == null) return;
+        int profile = (playbackController.getLoadProfile() + 1) % PlaybackController.PROFILE_COUNT;
+        playbackController.setLoadProfile(profile);
+        Toast.makeText(this, playbackController.describeProfile(profile) + "\n" + playbackController.getStats(),
+                Toast.LENGTH_LONG).show();
+    }
+
     private void initializeAppAfterPermissions() {
         runOnUiThread(() -> Toast.makeText(this, "Preparing files...", Toast.LENGTH_SHORT).show());
 
@@ -292,10 +326,17 @@ public class MainActivity extends AppCompatActivity {
                 // First show the files (this operation should run on background thread)
                 showFilesInBackground();
 
+                // Bring the media catalog up to date before the selectors query it
+                mediaCatalog.syncAll(PHOTOS_DIR, VIDEOS_DIR, DESI_DIR, FOREIGN_DIR, FAV_DIR);
+                videoMetadataCache.preload();
+
                 // Then initialize selectors and paths on UI thread
                 runOnUiThread(() -> {
                     try {
                         initializeSelectorsAndPaths(videoDirectoryPath, photoDirectoryPath, filesDirectoryPath);
+                        startMediaLibraryObserver();
+                        startVideoMetadataWorker();
+                        startImageReencodeWorker();
                         setupButtonListeners();
 
                         if (randomImageView != null) randomImageView.setVisibility(View.VISIBLE);
@@ -315,10 +356,9 @@ public class MainActivity extends AppCompatActivity {
                         // Move this block here:
                         if (currentlyPlayingVideoPath == null) {
                             String folder = isUsingDesiFolder ? DESI_DIR : FOREIGN_DIR;
-                            List<String> videoPaths = getVideoPathsFromFolder(folder);
-                            if (videoPaths != null && !videoPaths.isEmpty()) {
-                                currentlyPlayingVideoPath = videoPaths.get(0);
-                                playVideoAfterOrientationChange();
+                            String videoPath = nextFromShuffleBag(folder, MediaCatalog.TYPE_VIDEO);
+                            if (videoPath != null) {
+                                playbackController.play(videoPath, "launch");
                             }
                         }
 
@@ -410,8 +450,11 @@ public class MainActivity extends AppCompatActivity {
 
     private void initializeSelectorsAndPaths(String videoPath, String photoPath, String filesPath) {
         try {
-            randomVideoSelector = new RandomVideoSelector(videoPath);
-            randomPhotoSelector = new RandomPhotoSelector(photoPath);
+            SharedPreferences weightPrefs = getSharedPreferences(FolderWeights.PREFS_NAME, MODE_PRIVATE);
+            randomVideoSelector = new RandomVideoSelector(videoPath, mediaCatalog,
+                    FolderWeights.load(weightPrefs, videoPath));
+            randomPhotoSelector = new RandomPhotoSelector(photoPath, mediaCatalog,
+                    FolderWeights.load(weightPrefs, photoPath));
             random = new Random();
     
             shuffledVideoPaths = randomVideoSelector.getVideoPaths();
@@ -422,9 +465,6 @@ public class MainActivity extends AppCompatActivity {
                 return;
             }
     
-            Collections.shuffle(shuffledVideoPaths);
-            Collections.shuffle(shuffledPhotoPaths);
-    
             Log.d("MainActivity", "Number of photo paths: " + shuffledPhotoPaths.size());
             Log.d("MainActivity", "Number of video paths: " + shuffledVideoPaths.size());
     
@@ -434,6 +474,14 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    private void startMediaLibraryObserver() {
+        if (mediaLibraryObserver != null) return;
+        // Shuffle bags pick up added files on their next round and skip removed ones
+        mediaLibraryObserver = new MediaLibraryObserver(mediaCatalog,
+                PHOTOS_DIR, VIDEOS_DIR, DESI_DIR, FOREIGN_DIR, FAV_DIR);
+        mediaLibraryObserver.start();
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -453,6 +501,12 @@ public class MainActivity extends AppCompatActivity {
 
         // Initialize app-specific directories
         initializeAppDirectories();
+        mediaCatalog = MediaCatalog.getInstance(this);
+        videoMetadataCache = VideoMetadataCache.getInstance(this);
+        photoDecoder = new PhotoDecoder(this);
+        photoPrefetcher = new PhotoPrefetcher(photoDecoder);
+        burstPresenter = new BurstPresenter(photoDecoder);
+        shuffleBagPrefs = getSharedPreferences("shuffle_bags", MODE_PRIVATE);
 
         // Keep screen on
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
@@ -522,6 +576,10 @@ public class MainActivity extends AppCompatActivity {
         // Initialize the interval button
         intervalButton = findViewById(R.id.intervalButton);
         intervalButton.setOnClickListener(v -> changeInterval());
+        intervalButton.setOnLongClickListener(v -> {
+            cycleTransitionStyle();
+            return true;
+        });
 
         // Initialize the Auto Random button
         Button autoRandomButton = findViewById(R.id.autoRandomButton);
@@ -530,10 +588,9 @@ public class MainActivity extends AppCompatActivity {
         if (savedInstanceState == null) {
             // First launch or after orientation change
             String folder = isUsingDesiFolder ? DESI_DIR : FOREIGN_DIR;
-            List<String> videoPaths = getVideoPathsFromFolder(folder);
-            if (videoPaths != null && !videoPaths.isEmpty()) {
-                currentlyPlayingVideoPath = videoPaths.get(0);
-                playVideoAfterOrientationChange();
+            String videoPath = nextFromShuffleBag(folder, MediaCatalog.TYPE_VIDEO);
+            if (videoPath != null) {
+                playbackController.play(videoPath, "launch");
             }
         }
     }
@@ -573,16 +630,19 @@ public class MainActivity extends AppCompatActivity {
 
     private void changeInterval() {
         currentIntervalIndex = (currentIntervalIndex + 1) % intervals.length; // Cycle through intervals
-        int newInterval = intervals[currentIntervalIndex];
-        intervalButton.setText(newInterval + "s");
+        intervalButton.setText(formatInterval(intervals[currentIntervalIndex]));
 
         // Restart the photo change timer with the new interval
-        if (photoChangeRunnable != null) {
-            photoChangeHandler.removeCallbacks(photoChangeRunnable);
+        if (photoChangeRunnable != null || burstPresenter.isRunning()) {
+            stopPhotoChangeTimer();
             startPhotoChangeTimer();
         }
     }
 
+    private static String formatInterval(long intervalMs) {
+        return intervalMs < 1000 ? intervalMs + "ms" : (intervalMs / 1000) + "s";
+    }
+
     private void toggleAutoRandomMode() {
         if (intervalButton.getVisibility() == View.GONE) {
             // Enable Auto Random mode
@@ -596,25 +656,82 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void startPhotoChangeTimer() {
+        long intervalMs = intervals[currentIntervalIndex];
+        if (intervalMs < BURST_INTERVAL_MS) {
+            startBurst(intervalMs);
+            return;
+        }
+        photoPrefetcher.setInterval(intervalMs);
+        photoPrefetcher.resetStats();
+        refillPhotoPrefetch();
         photoChangeRunnable = new Runnable() {
             @Override
             public void run() {
                 changePhoto(); // Method to change the photo
-                photoChangeHandler.postDelayed(this, intervals[currentIntervalIndex] * 1000L); // Schedule next change
+                photoChangeHandler.postDelayed(this, intervals[currentIntervalIndex]); // Schedule next change
             }
         };
-        photoChangeHandler.postDelayed(photoChangeRunnable, intervals[currentIntervalIndex] * 1000L);
+        photoChangeHandler.postDelayed(photoChangeRunnable, intervalMs);
+    }
+
+    // Flipbook: decoding and pacing are left to the BurstPresenter; the interval button shows how
+    // close the device gets to the target rate
+    private void startBurst(long intervalMs) {
+        photoPrefetcher.clear();
+        burstPresenter.setOnStatsListener(() -> intervalButton.setText(formatInterval(intervalMs) + " "
+                + burstPresenter.getFps() + "fps q" + burstPresenter.getBacklog()));
+        burstPresenter.start(() -> nextFromShuffleBag(photoDirectoryPath, MediaCatalog.TYPE_PHOTO),
+                (path, bitmap) -> {
+                    if (tiledImageView.getVisibility() == View.VISIBLE) {
+                        photoDecoder.release(bitmap); // Don't pull a zoomed photo away
+                        return;
+                    }
+                    currentPhotoPath = path;
+                    photoDecoder.cancel(randomImageView);
+                    showPhotoBitmap(bitmap);
+                },
+                intervalMs, PhotoDecoder.targetWidth(randomImageView), PhotoDecoder.targetHeight(randomImageView));
     }
 
     private void stopPhotoChangeTimer() {
         if (photoChangeRunnable != null) {
             photoChangeHandler.removeCallbacks(photoChangeRunnable);
         }
+        if (burstPresenter.isRunning()) {
+            burstPresenter.stop();
+            intervalButton.setText(formatInterval(intervals[currentIntervalIndex]));
+        }
+        Log.d(TAG, photoPrefetcher.getStats());
+        Log.d(TAG, BitmapCache.getInstance(this).getStats());
+        Log.d(TAG, photoDecoder.getPoolStats());
+        photoPrefetcher.clear();
     }
 
+    // Slideshow tick: swaps in the prefetched bitmap when there is one, then tops the ring up
     private void changePhoto() {
-        displayNextRandomPhoto();
-        // Toast.makeText(this, "Photo changed!", Toast.LENGTH_SHORT).show();
+        if (tiledImageView.getVisibility() == View.VISIBLE) return; // Don't pull a zoomed photo away
+        String photoPath = nextFromShuffleBag(photoDirectoryPath, MediaCatalog.TYPE_PHOTO);
+        if (photoPath == null) {
+            Toast.makeText(this, "No photos found.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Bitmap bitmap = photoPrefetcher.take(photoPath);
+        if (bitmap != null) {
+            mediaCatalog.recordPlay(photoPath);
+            currentPhotoPath = photoPath;
+            photoDecoder.cancel(randomImageView);
+            showPhotoBitmap(bitmap);
+        } else {
+            displayPhoto(photoPath);
+        }
+        refillPhotoPrefetch();
+    }
+
+    private void refillPhotoPrefetch() {
+        ShuffleBag bag = shuffleBags.get(photoDirectoryPath);
+        if (bag != null) {
+            photoPrefetcher.refill(bag::peek, randomImageView);
+        }
     }
 
     // Update the method call in initializeAppDirectories()
@@ -915,12 +1032,30 @@ public class MainActivity extends AppCompatActivity {
                 // Required to ensure other gesture events are processed
                 return true;
             }
+
+            @Override
+            public void onLongPress(@NonNull MotionEvent e) {
+                showTiledPhoto();
+            }
         });
 
         View rootView = findViewById(android.R.id.content);
         rootView.setOnTouchListener((v, event) -> gestureDetector.onTouchEvent(event));
     }
 
+    // Long press on a photo: full-resolution zoom and pan, decoded tile by tile
+    private void showTiledPhoto() {
+        if (currentPhotoPath == null || randomImageView.getVisibility() != View.VISIBLE) return;
+        tiledImageView.setVisibility(View.VISIBLE);
+        tiledImageView.setImage(currentPhotoPath);
+    }
+
+    private void hideTiledPhoto() {
+        if (tiledImageView == null || tiledImageView.getVisibility() != View.VISIBLE) return;
+        tiledImageView.setVisibility(View.GONE);
+        tiledImageView.recycle();
+    }
+
     private void hideViewsInitially() {
         if (randomImageView != null) randomImageView.setVisibility(View.INVISIBLE);
         if (playerView != null) playerView.setVisibility(View.INVISIBLE);
@@ -944,22 +1079,22 @@ public class MainActivity extends AppCompatActivity {
 
                 if (x < width / 3) {
                     // Double-tap on the left portion: Seek backward by 5 seconds
-                    if (exoPlayer != null && (exoPlayer.isPlaying() )) {
-                        int currentPosition = (int) exoPlayer.getCurrentPosition();
+                    if (playbackController != null && playbackController.isPlaying()) {
+                        int currentPosition = (int) playbackController.getCurrentPosition();
                         int newPosition = Math.max(currentPosition - 5000, 0);
                         isSeekInProgress = true;
-                        exoPlayer.seekTo(newPosition);
+                        playbackController.seekTo(newPosition);
                         playerView.postDelayed(() -> isSeekInProgress = false, 1000); // 1s delay, adjust as needed
                         // Toast.makeText(MainActivity.this, "Rewind 5 seconds", Toast.LENGTH_SHORT).show();
                     }
                 } else if (x > 2 * width / 3) {
                     // Double-tap on the right portion: Seek forward by 5 seconds
-                    if (exoPlayer != null && (exoPlayer.isPlaying() )) {
-                        int currentPosition = (int) exoPlayer.getCurrentPosition();
-                        int duration = (int) exoPlayer.getDuration();;
+                    if (playbackController != null && playbackController.isPlaying()) {
+                        int currentPosition = (int) playbackController.getCurrentPosition();
+                        int duration = (int) playbackController.getDuration();;
                         int newPosition = (duration > 0) ? Math.min(currentPosition + 5000, duration - 100) : currentPosition + 5000;
                         isSeekInProgress = true;
-                        exoPlayer.seekTo(newPosition);
+                        playbackController.seekTo(newPosition);
                         playerView.postDelayed(() -> isSeekInProgress = false, 1000); // 1s delay, adjust as needed
                         // Toast.makeText(MainActivity.this, "Forward 5 seconds", Toast.LENGTH_SHORT).show();
                     }
@@ -996,8 +1131,7 @@ public class MainActivity extends AppCompatActivity {
                     if (deltaX > 0) {
                         // Swipe right: Favorite after playback
                         if (currentlyPlayingVideoPath != null) {
-                            pendingFavMovePath = currentlyPlayingVideoPath;
-                            Toast.makeText(MainActivity.this, "Will move to Fav after playback.", Toast.LENGTH_SHORT).show();
+                            markPendingFav(currentlyPlayingVideoPath);
                         }
                     } else {
                         // Swipe left: Delete after playback
@@ -1023,11 +1157,11 @@ public class MainActivity extends AppCompatActivity {
 
                 if (e2.getY() - initialY > scrollThreshold) {
                  // Moved down beyond the threshold
-                    playPreviousRandomVideo();
+                    skipCoalescer.skip(-1);
                     initialY = 0;
                 } else if (initialY - e2.getY() > scrollThreshold) {
                  // Moved up beyond the threshold
-                    playNextRandomVideo();
+                    skipCoalescer.skip(1);
                     initialY = 0;
                 }
                 return true;
@@ -1060,21 +1194,21 @@ private void setupPlayerViewTouch() {
 
             if (x < width / 3) {
                 // Double-tap on the left portion: Seek backward by 5 seconds
-                if (exoPlayer != null && (exoPlayer.isPlaying() )) {
-                    int currentPosition = (int) exoPlayer.getCurrentPosition();
+                if (playbackController != null && playbackController.isPlaying()) {
+                    int currentPosition = (int) playbackController.getCurrentPosition();
                     int newPosition = Math.max(currentPosition - 5000, 0);
                     isSeekInProgress = true;
-                    exoPlayer.seekTo(newPosition);
+                    playbackController.seekTo(newPosition);
                     playerView.postDelayed(() -> isSeekInProgress = false, 1000); // 1s delay, adjust as needed
                 }
             } else if (x > 2 * width / 3) {
                 // Double-tap on the right portion: Seek forward by 5 seconds
-                if (exoPlayer != null && (exoPlayer.isPlaying() )) {
-                    int currentPosition = (int) exoPlayer.getCurrentPosition();
-                    int duration = (int) exoPlayer.getDuration();
+                if (playbackController != null && playbackController.isPlaying()) {
+                    int currentPosition = (int) playbackController.getCurrentPosition();
+                    int duration = (int) playbackController.getDuration();
                     int newPosition = (duration > 0) ? Math.min(currentPosition + 5000, duration - 100) : currentPosition + 5000;
                     isSeekInProgress = true;
-                    exoPlayer.seekTo(newPosition);
+                    playbackController.seekTo(newPosition);
                     playerView.postDelayed(() -> isSeekInProgress = false, 1000); // 1s delay, adjust as needed
                 }
             } else {
@@ -1108,8 +1242,7 @@ private void setupPlayerViewTouch() {
                 if (deltaX > 0) {
                     // Swipe right: Favorite after playback
                     if (currentlyPlayingVideoPath != null) {
-                        pendingFavMovePath = currentlyPlayingVideoPath;
-                        Toast.makeText(MainActivity.this, "Will move to Fav after playback.", Toast.LENGTH_SHORT).show();
+                        markPendingFav(currentlyPlayingVideoPath);
                     }
                 } else {
                     // Swipe left: Delete after playback
@@ -1132,10 +1265,10 @@ private void setupPlayerViewTouch() {
             }
 
             if (e2.getY() - initialY > scrollThreshold) {
-                playPreviousRandomVideo();
+                skipCoalescer.skip(-1);
                 initialY = 0;
             } else if (initialY - e2.getY() > scrollThreshold) {
-                playNextRandomVideo();
+                skipCoalescer.skip(1);
                 initialY = 0;
             }
             return true;
@@ -1154,6 +1287,8 @@ private void setupPlayerViewTouch() {
 
     private void initializeViews() {
         randomImageView = findViewById(R.id.randomImageView);
+        tiledImageView = findViewById(R.id.tiledImageView);
+        photoTransition = new PhotoTransition(photoDecoder, randomImageView, findViewById(R.id.fadeImageView));
         playerView = findViewById(R.id.playerView);
         recyclerView = findViewById(R.id.recyclerView);
         timerTextView = findViewById(R.id.timerTextView);
@@ -1163,12 +1298,11 @@ private void setupPlayerViewTouch() {
         FloatingActionButton switchCameraButton = findViewById(R.id.switchCameraButton);
         muteButton = findViewById(R.id.muteButton);
 
-        // ExoPlayer setup
-        exoPlayer = new ExoPlayer.Builder(this).build();
-        playerView.setPlayer(exoPlayer);
+        playbackController = new PlaybackController(this, playerView, videoMetadataCache, videoSource, playbackCallback);
+        playbackController.setSpeed(playbackSpeeds[currentSpeedIndex]);
 
         // Mute by default
-        exoPlayer.setVolume(0f);
+        playbackController.setVolume(0f);
         isMuted = true;
         updateMuteIcon();
 
@@ -1193,6 +1327,10 @@ private void setupPlayerViewTouch() {
 
         // Set up the playback speed button
         playbackSpeedButton.setOnClickListener(v -> changePlaybackSpeed());
+        playbackSpeedButton.setOnLongClickListener(v -> {
+            cycleLoadProfile();
+            return true;
+        });
 
         // Bring PreviewView to front so it's always on top
         if (previewView != null) {
@@ -1361,9 +1499,9 @@ private void setupPlayerViewTouch() {
     }
 
     private void updateVideoProgressLabel() {
-        if (playerView != null && exoPlayer.isPlaying()) {
-            int current = (int) (exoPlayer.getCurrentPosition() / 1000);
-            int total = (int) exoPlayer.getDuration() / 1000;
+        if (playerView != null && playbackController.isPlaying()) {
+            int current = (int) (playbackController.getCurrentPosition() / 1000);
+            int total = (int) playbackController.getDuration() / 1000;
             String progress = String.format(Locale.getDefault(), "%02d:%02d / %02d:%02d",
                     current / 60, current % 60, total / 60, total % 60);
             videoProgressLabel.setText(progress);
@@ -1375,9 +1513,9 @@ private void setupPlayerViewTouch() {
         videoProgressHandler.postDelayed(new Runnable() {
             @Override
             public void run() {
-                if (exoPlayer != null && exoPlayer.isPlaying()) {
-                    long current = exoPlayer.getCurrentPosition() / 1000;
-                    long total = exoPlayer.getDuration() / 1000;
+                if (playbackController != null && playbackController.isPlaying()) {
+                    long current = playbackController.getCurrentPosition() / 1000;
+                    long total = playbackController.getDuration() / 1000;
                     String progress = String.format(Locale.getDefault(), "%02d:%02d / %02d:%02d",
                             current / 60, current % 60, total / 60, total % 60);
                     videoProgressLabel.setText(progress);
@@ -1393,18 +1531,27 @@ private void setupPlayerViewTouch() {
         Button randomButton = findViewById(R.id.randomButton);
         Button autoRandomButton = findViewById(R.id.autoRandomButton);
         Button scrollButton = findViewById(R.id.scrollButton);
+        Button gridButton = findViewById(R.id.gridButton);
         Button loveButton = findViewById(R.id.loveButton);
         Button favButton = findViewById(R.id.favButton);
 
         videoButton.setOnClickListener(v -> {
             isFavMode = false; // Exit fav mode when switching to videos mode
             isUsingDesiFolder = !isUsingDesiFolder; // Toggle folder ONLY here
-            playNextRandomVideo();
+            // Entering a folder jumps to a weighted pick; next/previous then follow its shuffle bag.
+            // Mashing the button only flips the folder; one pick is made once the presses stop.
+            skipCoalescer.pick(() -> playNextRandomVideo(
+                    weightedPick(isUsingDesiFolder ? DESI_DIR : FOREIGN_DIR, MediaCatalog.TYPE_VIDEO)));
         });
         stopVideoButton.setOnClickListener(v -> stopVideo());
         randomButton.setOnClickListener(v -> {
             stopVideo();
-            displayNextRandomPhoto();
+            String photoPath = randomPhotoSelector != null ? randomPhotoSelector.getRandomImagePath() : null;
+            if (photoPath != null) {
+                displayPhoto(photoPath);
+            } else {
+                displayNextRandomPhoto();
+            }
         });
         autoRandomButton.setOnClickListener(v -> {
             stopVideo();
@@ -1417,8 +1564,11 @@ private void setupPlayerViewTouch() {
             } else {
                 // Disable Auto Random mode
                 intervalButton.setVisibility(View.GONE); // Hide the interval button
+                boolean wasBurst = burstPresenter.isRunning();
                 stopPhotoChangeTimer(); // Stop the photo change timer
                 isAutoRandomRunning = false;
+                Toast.makeText(this, wasBurst ? burstPresenter.getStats() : photoPrefetcher.getStats(),
+                        Toast.LENGTH_SHORT).show();
                 autoRandomButton.setText("Auto Random");
             }
         });
@@ -1433,221 +1583,261 @@ private void setupPlayerViewTouch() {
                 setupRecyclerView(photoDirectoryPath, false);
             }
         });
+        scrollButton.setOnLongClickListener(v -> {
+            toggleImageReencode();
+            return true;
+        });
+        gridButton.setOnClickListener(v -> toggleGridView());
+        gridButton.setOnLongClickListener(v -> {
+            cycleGridSpan();
+            return true;
+        });
         loveButton.setOnClickListener(v -> saveCurrentVideoToFav());
         favButton.setOnClickListener(v -> playFavVideos());
+        favButton.setOnLongClickListener(v -> {
+            toggleFaststart();
+            return true;
+        });
     }
 
     private void displayNextRandomPhoto() {
-        if (shuffledPhotoPaths == null || shuffledPhotoPaths.isEmpty()) {
+        String photoPath = nextFromShuffleBag(photoDirectoryPath, MediaCatalog.TYPE_PHOTO);
+        if (photoPath == null) {
             Toast.makeText(this, "No photos found.", Toast.LENGTH_SHORT).show();
             return;
         }
+        displayPhoto(photoPath);
+    }
+
+    private void displayPhoto(String photoPath) {
+        Log.d("MainActivity", "Displaying photo: " + photoPath);
+        mediaCatalog.recordPlay(photoPath);
+        currentPhotoPath = photoPath;
+
+        photoDecoder.load(randomImageView, photoPath, (path, bitmap) -> {
+            if (bitmap == null) {
+                Log.e("MainActivity", "Failed to decode image: " + path);
+                Toast.makeText(this, "Error loading image", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            showPhotoBitmap(bitmap);
+        });
+    }
+
+    // Takes over the caller's pool reference; the previous photo's is released once it is replaced
+    private void showPhotoBitmap(Bitmap bitmap) {
+        // Crop only when the photo matches the view's orientation, otherwise fit it so a
+        // landscape photo is not cut down to a sliver
+        boolean viewPortrait = randomImageView.getHeight() >= randomImageView.getWidth();
+        boolean photoPortrait = bitmap.getHeight() >= bitmap.getWidth();
+        ImageView.ScaleType scaleType = viewPortrait == photoPortrait
+                ? ImageView.ScaleType.CENTER_CROP : ImageView.ScaleType.FIT_CENTER;
+        // Only slideshow ticks animate; a burst flips too fast and manual picks should be instant
+        boolean slideshow = isAutoRandomRunning && !burstPresenter.isRunning()
+                && randomImageView.getVisibility() == View.VISIBLE;
+        // The previous photo's reference goes along, released once it is off screen; also right
+        // when the same bitmap is shown again
+        photoTransition.show(bitmap, currentPhotoBitmap, scaleType,
+                slideshow ? transitionStyle() : PhotoTransition.STYLE_CUT, intervals[currentIntervalIndex]);
+        randomImageView.setVisibility(View.VISIBLE);
+        playerView.setVisibility(View.GONE);
+        hideTiledPhoto();
+        currentPhotoBitmap = bitmap;
+    }
+
+    private int transitionStyle() {
+        return AppSettings.get(this)
+                .getInt(PhotoTransition.KEY_STYLE, PhotoTransition.STYLE_CROSSFADE);
+    }
+
+    private void cycleTransitionStyle() {
+        int style = (transitionStyle() + 1) % 3;
+        AppSettings.get(this).edit()
+                .putInt(PhotoTransition.KEY_STYLE, style).apply();
+        Toast.makeText(this, "Transition: " + PhotoTransition.styleName(style), Toast.LENGTH_SHORT).show();
+    }
+
+    // Weighted pick (play count, recency, boosts) for folders without their own selector
+    private String weightedPick(String folderPath, int mediaType) {
+        if (folderPath == null) return null;
+        WeightedSelector selector = weightedSelectors.get(folderPath);
+        if (selector == null) {
+            SharedPreferences weightPrefs = getSharedPreferences(FolderWeights.PREFS_NAME, MODE_PRIVATE);
+            selector = new WeightedSelector(mediaCatalog, folderPath, mediaType,
+                    FolderWeights.load(weightPrefs, folderPath));
+            weightedSelectors.put(folderPath, selector);
+        }
+        return selector.next(random);
+    }
 
-        if (currentPhotoIndex >= shuffledPhotoPaths.size()) {
-            currentPhotoIndex = 0;
+    private List<String> getVideoPathsFromFolder(String folderPath) {
+        // Served from the catalog; the filesystem is only touched by syncCatalogInBackground()
+        return mediaCatalog.getPaths(folderPath, MediaCatalog.TYPE_VIDEO);
+    }
+
+    private ShuffleBag newShuffleBag(String folderPath, int mediaType, boolean restore) {
+        // Sorted so the same seed replays the same order after a restart
+        List<String> paths = mediaCatalog.getPaths(folderPath, mediaType);
+        Collections.sort(paths);
+        ShuffleBag bag = restore ? ShuffleBag.restore(shuffleBagPrefs, folderPath, paths)
+                : new ShuffleBag(paths, random.nextLong());
+        shuffleBags.put(folderPath, bag);
+        return bag;
+    }
+
+    private String nextFromShuffleBag(String folderPath, int mediaType) {
+        if (folderPath == null) return null;
+        ShuffleBag bag = shuffleBags.get(folderPath);
+        if (bag == null) bag = newShuffleBag(folderPath, mediaType, true);
+        int attempts = 0;
+        while (attempts++ <= bag.size()) {
+            if (!bag.hasNext()) {
+                // Bag exhausted: start a new round over the current folder contents
+                bag = newShuffleBag(folderPath, mediaType, false);
+                if (bag.size() == 0) return null;
+            }
+            String path = bag.next();
+            if (mediaCatalog.contains(path)) return path; // Skip files removed since the round began
         }
+        return null;
+    }
 
-        String photoPath = (String) shuffledPhotoPaths.get(currentPhotoIndex);
-        currentPhotoIndex++;
-        Log.d("MainActivity", "Displaying photo: " + photoPath);
+    private String previousFromShuffleBag(String folderPath) {
+        ShuffleBag bag = shuffleBags.get(folderPath);
+        if (bag == null) return null;
+        String path;
+        while ((path = bag.previous()) != null) {
+            if (mediaCatalog.contains(path)) return path;
+        }
+        return null;
+    }
 
-        Bitmap bitmap = BitmapFactory.decodeFile(photoPath);
-        if (bitmap != null) {
-            randomImageView.setImageBitmap(bitmap);
-            randomImageView.setVisibility(View.VISIBLE);
-            playerView.setVisibility(View.GONE);
-        } else {
-            Log.e("MainActivity", "Failed to decode image: " + photoPath);
-            Toast.makeText(this, "Error loading image", Toast.LENGTH_SHORT).show();
+    private void saveShuffleBags() {
+        for (Map.Entry<String, ShuffleBag> entry : shuffleBags.entrySet()) {
+            entry.getValue().save(shuffleBagPrefs, entry.getKey());
         }
     }
 
-    private List<String> getVideoPathsFromFolder(String folderPath) {
-        File folder = new File(folderPath);
-        List<String> videoPaths = new ArrayList<>();
-    
-        if (folder.exists() && folder.isDirectory()) {
-            File[] files = folder.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isFile() && file.getName().endsWith(".mp4")) {
-                        videoPaths.add(file.getAbsolutePath());
-                    }
+    private void syncCatalogInBackground(String... folderPaths) {
+        new Thread(() -> {
+            try {
+                if (mediaCatalog.syncAll(folderPaths)) {
+                    runOnUiThread(this::startVideoMetadataWorker);
                 }
+            } catch (Exception e) {
+                Log.e(TAG, "Error syncing media catalog", e);
             }
-        }
-    
-        return videoPaths;
+        }).start();
     }
 
     private void playNextRandomVideo() {
+        playNextRandomVideo(null);
+    }
+
+    private void playNextRandomVideo(String pickedPath) {
         if (isFavMode) {
             playNextFavVideo();
             return;
         }
+        if (pickedPath == null && isVideoViewActive && playbackController.skipToNext("next")) return;
         String currentFolderPath = isUsingDesiFolder ? DESI_DIR : FOREIGN_DIR;
         isVideoViewActive = true;
 
-        List<String> videoPaths = getVideoPathsFromFolder(currentFolderPath);
+        String videoPath = pickedPath != null ? pickedPath
+                : nextFromShuffleBag(currentFolderPath, MediaCatalog.TYPE_VIDEO);
 
-        if (videoPaths == null || videoPaths.isEmpty()) {
+        if (videoPath == null) {
             Toast.makeText(this, "No videos found in " + (isUsingDesiFolder ? "Desi" : "Foreign") + " folder.", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        Collections.shuffle(videoPaths);
-
-        if (currentVideoIndex >= videoPaths.size()) {
-            currentVideoIndex = 0;
-        }
-
-        String videoPath = videoPaths.get(currentVideoIndex);
-        currentVideoIndex++;
-        currentlyPlayingVideoPath = videoPath;
+        playbackController.play(videoPath, pickedPath != null ? "pick" : "next");
+    }
 
-        // Set orientation/layout based on video dimensions
-        int[] dims = getVideoDimensions(videoPath);
-        if (dims != null && dims[0] > 0 && dims[1] > 0) {
-            int videoWidth = dims[0];
-            int videoHeight = dims[1];
+    private String currentVideoFolder() {
+        return isFavMode ? FAV_DIR : (isUsingDesiFolder ? DESI_DIR : FOREIGN_DIR);
+    }
 
-            int screenWidth = getResources().getDisplayMetrics().widthPixels;
-            int screenHeight = getResources().getDisplayMetrics().heightPixels;
+    // The playlist follows the current folder's shuffle bag, whichever folder that is at the time
+    private final PlaybackController.Source videoSource = new PlaybackController.Source() {
+        @Override
+        public String next() {
+            return nextFromShuffleBag(currentVideoFolder(), MediaCatalog.TYPE_VIDEO);
+        }
 
-            ViewGroup.LayoutParams params = playerView.getLayoutParams();
+        @Override
+        public String peek(int offset) {
+            ShuffleBag bag = shuffleBags.get(currentVideoFolder());
+            String path = bag != null ? bag.peek(offset) : null;
+            return path != null && mediaCatalog.contains(path) ? path : null;
+        }
+    };
 
-            if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE) {
-                // In landscape, fit to screen height
-                params.height = screenHeight;
-                params.width = (int) ((float) screenHeight * videoWidth / videoHeight);
-            } else {
-                // In portrait, fit to screen width
-                params.width = screenWidth;
-                params.height = (int) ((float) screenWidth * videoHeight / videoWidth);
-            }
+    private final PlaybackController.Callback playbackCallback = new PlaybackController.Callback() {
+        @Override
+        public void onVideoShown() {
+            hideTiledPhoto();
+            photoTransition.cancel();
+            playerView.setVisibility(View.VISIBLE);
+            randomImageView.setVisibility(View.GONE);
+        }
 
-            playerView.setLayoutParams(params);
+        @Override
+        public void onVideoStarted(String path, boolean auto) {
+            currentlyPlayingVideoPath = path;
+            mediaCatalog.recordPlay(path);
+            if (auto) movePendingFavIfNeeded();
+            updateVideoProgressLabelExo();
+        }
 
-            // Center vertically/horizontally in FrameLayout
-            if (playerView.getParent() instanceof FrameLayout) {
-                FrameLayout.LayoutParams flParams = (FrameLayout.LayoutParams) playerView.getLayoutParams();
-                flParams.gravity = Gravity.CENTER;
-                playerView.setLayoutParams(flParams);
+        @Override
+        public void onPlaylistEnded() {
+            // Only when nothing was queued, e.g. the bag ran out and needs a new round
+            if (isVideoViewActive) {
+                playNextRandomVideo();
+                movePendingFavIfNeeded();
             }
         }
+    };
 
-        // Prepare and play video with ExoPlayer
-        playerView.setVisibility(View.VISIBLE);
-        randomImageView.setVisibility(View.GONE);
-
-        exoPlayer.setMediaItem(MediaItem.fromUri(Uri.parse(videoPath)));
-        exoPlayer.prepare();
-        exoPlayer.setPlayWhenReady(true);
-
-        // Set playback speed
-        float speed = playbackSpeeds[currentSpeedIndex];
-        exoPlayer.setPlaybackParameters(new PlaybackParameters(speed));
-
-        // Listen for video end
-        exoPlayer.addListener(new com.google.android.exoplayer2.Player.Listener() {
-            @Override
-            public void onPlaybackStateChanged(int state) {
-                if (state == com.google.android.exoplayer2.Player.STATE_ENDED) {
-                    playNextRandomVideo();
-                    movePendingFavIfNeeded();
-                }
+    // Net result of a burst of next/previous presses: the bag walks past the skipped videos, which
+    // only touches memory, and just the last one is played
+    private void skipVideos(int moves) {
+        if (moves > 0) {
+            for (int i = 1; i < moves; i++) {
+                if (nextFromShuffleBag(currentVideoFolder(), MediaCatalog.TYPE_VIDEO) == null) break;
             }
-        });
-
-        updateVideoProgressLabelExo();
+            playNextRandomVideo();
+        } else {
+            playPreviousRandomVideo(-moves);
+        }
     }
 
-    private void playPreviousRandomVideo() {
-    if (isFavMode) {
-        playNextFavVideo(); // Or implement playPreviousFavVideo() if you want true previous in Fav mode
-        return;
-    }
-    String currentFolderPath = isUsingDesiFolder ? DESI_DIR : FOREIGN_DIR;
+    private void playPreviousRandomVideo(int steps) {
+    String currentFolderPath = isFavMode ? FAV_DIR : (isUsingDesiFolder ? DESI_DIR : FOREIGN_DIR);
     isVideoViewActive = true;
 
-    List<String> videoPaths = getVideoPathsFromFolder(currentFolderPath);
-
-    if (videoPaths == null || videoPaths.isEmpty()) {
-        Toast.makeText(this, "No videos found in " + (isUsingDesiFolder ? "Desi" : "Foreign") + " folder.", Toast.LENGTH_SHORT).show();
-        return;
+    String videoPath = null;
+    for (int i = 0; i < steps; i++) {
+        String previous = previousFromShuffleBag(currentFolderPath);
+        if (previous == null) break; // Stop at the start of the history
+        videoPath = previous;
     }
 
-    currentVideoIndex--;
-    if (currentVideoIndex < 0) {
-        currentVideoIndex = videoPaths.size() - 1;
-    }
-
-    String videoPath = videoPaths.get(currentVideoIndex);
-    currentlyPlayingVideoPath = videoPath;
-
-    // Set orientation/layout based on video dimensions
-    int[] dims = getVideoDimensions(videoPath);
-    if (dims != null && dims[0] > 0 && dims[1] > 0) {
-        int videoWidth = dims[0];
-        int videoHeight = dims[1];
-
-        int screenWidth = getResources().getDisplayMetrics().widthPixels;
-        int screenHeight = getResources().getDisplayMetrics().heightPixels;
-
-        ViewGroup.LayoutParams params = playerView.getLayoutParams();
-
-        if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE) {
-            // In landscape, fit to screen height
-            params.height = screenHeight;
-            params.width = (int) ((float) screenHeight * videoWidth / videoHeight);
-        } else {
-            // In portrait, fit to screen width
-            params.width = screenWidth;
-            params.height = (int) ((float) screenWidth * videoHeight / videoWidth);
-        }
-
-        playerView.setLayoutParams(params);
-
-        // Center vertically/horizontally in FrameLayout
-        if (playerView.getParent() instanceof FrameLayout) {
-            FrameLayout.LayoutParams flParams = (FrameLayout.LayoutParams) playerView.getLayoutParams();
-            flParams.gravity = Gravity.CENTER;
-            playerView.setLayoutParams(flParams);
-        }
+    if (videoPath == null) {
+        Toast.makeText(this, "No previous video.", Toast.LENGTH_SHORT).show();
+        return;
     }
 
-    // Prepare and play video with ExoPlayer
-    playerView.setVisibility(View.VISIBLE);
-    randomImageView.setVisibility(View.GONE);
-
-    exoPlayer.setMediaItem(MediaItem.fromUri(Uri.parse(videoPath)));
-    exoPlayer.prepare();
-    exoPlayer.setPlayWhenReady(true);
-
-    // Set playback speed
-    float speed = playbackSpeeds[currentSpeedIndex];
-    exoPlayer.setPlaybackParameters(new PlaybackParameters(speed));
-
-    // Listen for video end
-    exoPlayer.addListener(new com.google.android.exoplayer2.Player.Listener() {
-        @Override
-        public void onPlaybackStateChanged(int state) {
-            if (state == com.google.android.exoplayer2.Player.STATE_ENDED) {
-                playNextRandomVideo();
-                movePendingFavIfNeeded();
-            }
-        }
-    });
-
-    updateVideoProgressLabelExo();
+    playbackController.play(videoPath, "previous");
     movePendingFavIfNeeded();
 }
 
     private void stopVideo() {
+        skipCoalescer.cancel();
         isVideoViewActive = false;
-        if (exoPlayer != null) {
-            exoPlayer.setPlayWhenReady(false); // Pause playback
-            exoPlayer.stop(); // Optionally reset playback state
+        if (playbackController != null) {
+            playbackController.stop(); // Pause and reset playback state
         }
         if (playerView != null) playerView.setVisibility(View.GONE);
         if (randomImageView != null) randomImageView.setVisibility(View.VISIBLE);
@@ -1676,10 +1866,18 @@ private void setupPlayerViewTouch() {
             }
 
             Collections.shuffle(paths);
+            if (!isVideo) {
+                // Only the first screens up front; ImageAdapter warms the next screen as the list scrolls
+                ThumbnailStore.getInstance(this).prefetch(
+                        paths.subList(0, Math.min(paths.size(), INITIAL_THUMBNAIL_ITEMS)), ThumbnailStore.SIZE_LARGE);
+            }
 
             RecyclerView.Adapter adapter = isVideo ? new VideoAdapter(this, paths) : new ImageAdapter(this, paths);
 
             if (recyclerView != null) {
+                if (recyclerView.getLayoutManager() instanceof GridLayoutManager) {
+                    recyclerView.setLayoutManager(new LinearLayoutManager(this));
+                }
                 recyclerView.setAdapter(adapter);
 
                 recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
@@ -1714,6 +1912,62 @@ private void setupPlayerViewTouch() {
         }
     }
 
+    // Grid of the folder being viewed: the current video folder while a video plays, else photos
+    private void toggleGridView() {
+        if (recyclerView == null) return;
+        if (recyclerView.getVisibility() == View.VISIBLE && recyclerView.getAdapter() instanceof GridAdapter) {
+            recyclerView.setVisibility(View.GONE);
+            randomImageView.setVisibility(View.VISIBLE);
+            return;
+        }
+        if (playerView.getVisibility() == View.VISIBLE) {
+            gridFolderPath = isFavMode ? FAV_DIR : (isUsingDesiFolder ? DESI_DIR : FOREIGN_DIR);
+            gridMediaType = MediaCatalog.TYPE_VIDEO;
+        } else {
+            gridFolderPath = photoDirectoryPath;
+            gridMediaType = MediaCatalog.TYPE_PHOTO;
+        }
+        stopVideo();
+        showGridView();
+    }
+
+    private void showGridView() {
+        if (gridFolderPath == null) {
+            Toast.makeText(this, "No files found in the specified folder.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        int span = AppSettings.get(this)
+                .getInt(KEY_GRID_SPAN, DEFAULT_GRID_SPAN);
+        recyclerView.setLayoutManager(new GridLayoutManager(this, span));
+        recyclerView.setAdapter(new GridAdapter(this, mediaCatalog, gridFolderPath, gridMediaType, span,
+                this::openFromGrid));
+        recyclerView.setVisibility(View.VISIBLE);
+        randomImageView.setVisibility(View.GONE);
+    }
+
+    private void cycleGridSpan() {
+        SharedPreferences prefs = AppSettings.get(this);
+        int span = prefs.getInt(KEY_GRID_SPAN, DEFAULT_GRID_SPAN) + 1;
+        if (span > MAX_GRID_SPAN) span = MIN_GRID_SPAN;
+        prefs.edit().putInt(KEY_GRID_SPAN, span).apply();
+        Toast.makeText(this, "Grid columns: " + span, Toast.LENGTH_SHORT).show();
+        if (recyclerView != null && recyclerView.getVisibility() == View.VISIBLE
+                && recyclerView.getAdapter() instanceof GridAdapter) {
+            showGridView();
+        }
+    }
+
+    private void openFromGrid(String path, int mediaType) {
+        recyclerView.setVisibility(View.GONE);
+        if (mediaType == MediaCatalog.TYPE_PHOTO) {
+            displayPhoto(path);
+        } else if (isFavMode) {
+            playNextFavVideo(path);
+        } else {
+            playNextRandomVideo(path);
+        }
+    }
+
     private boolean allPermissionsGranted() {
         for (String permission : REQUIRED_PERMISSIONS) {
             if (ContextCompat.checkSelfPermission(this, permission) != PackageManager.PERMISSION_GRANTED) {
@@ -1754,10 +2008,12 @@ private void setupPlayerViewTouch() {
         if (isAutoRandomRunning) {
             handler.removeCallbacks(autoRandomRunnable);
         }
-        if (exoPlayer != null) {
-            exoPlayer.setPlayWhenReady(false); // Pause playback
+        skipCoalescer.cancel();
+        if (playbackController != null) {
+            playbackController.pause();
         }
         videoProgressHandler.removeCallbacksAndMessages(null);
+        saveShuffleBags();
     }
 
     @Override
@@ -1767,9 +2023,8 @@ private void setupPlayerViewTouch() {
             handler.removeCallbacks(autoRandomRunnable);
             isAutoRandomRunning = false;
         }
-        if (exoPlayer != null) {
-            exoPlayer.setPlayWhenReady(false); // Pause playback
-            exoPlayer.stop();                  // Stop playback and reset state
+        if (playbackController != null) {
+            playbackController.stop();         // Stop playback and reset state
         }
         if (playerView != null) {
             playerView.setVisibility(View.GONE); // Hide the player view
@@ -1781,13 +2036,28 @@ private void setupPlayerViewTouch() {
 
     @Override
     protected void onDestroy() {
-        if (exoPlayer != null) {
-            exoPlayer.release();
-            exoPlayer = null;
+        if (playbackController != null) {
+            playbackController.release();
+            playbackController = null;
         }
         if (uninstallObserver != null) {
             uninstallObserver.stopWatching();
         }
+        if (mediaLibraryObserver != null) {
+            mediaLibraryObserver.stop();
+        }
+        if (photoPrefetcher != null) {
+            photoPrefetcher.shutdown();
+        }
+        if (burstPresenter != null) {
+            burstPresenter.shutdown();
+        }
+        if (photoTransition != null) {
+            photoTransition.cancel();
+        }
+        if (photoDecoder != null) {
+            photoDecoder.shutdown();
+        }
         restoreOriginalBrightness();
         super.onDestroy();
         if (cameraExecutor != null) {
@@ -1805,8 +2075,18 @@ private void setupPlayerViewTouch() {
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        BitmapCache.getInstance(this).trimMemory(level);
+    }
+
     @Override
     public void onBackPressed() {
+        if (tiledImageView != null && tiledImageView.getVisibility() == View.VISIBLE) {
+            hideTiledPhoto();
+            return;
+        }
         hideFiles();
         super.onBackPressed();
     }
@@ -1816,9 +2096,17 @@ private void setupPlayerViewTouch() {
         super.onResume();
         timerHandler.post(timerRunnable);
         showFiles();
+        // Watch again only once the files are back under their real names; the sync catches
+        // anything that changed while the app was in the background
+        if (mediaLibraryObserver != null) mediaLibraryObserver.start();
+        syncCatalogInBackground(PHOTOS_DIR, VIDEOS_DIR, DESI_DIR, FOREIGN_DIR, FAV_DIR);
     }
 
     private void hideFiles() {
+        // The renames below would reach the catalog as deletes and drop every row's play count,
+        // favourite, boost and original extension; a rename keeps size and mtime, so the sync
+        // in onResume sees the files unchanged
+        if (mediaLibraryObserver != null) mediaLibraryObserver.stop();
         try {
             renameFiles(photoDirectoryPath, true);
             renameFiles(videoDirectoryPath, true);
@@ -1844,36 +2132,49 @@ private void setupPlayerViewTouch() {
         if (directory.exists() && directory.isDirectory()) {
             File[] files = directory.listFiles();
             if (files != null) {
+                // Hiding records each file's real extension in the catalog so showing restores it
+                Map<String, String> extensions = isHiding ? new HashMap<>() : mediaCatalog.takeExtensions(directoryPath);
                 for (File file : files) {
                     if (file.isFile()) {
                         String originalName = file.getName();
                         int dotIndex = originalName.lastIndexOf('.');
                         if (dotIndex > 0) {
                             String nameWithoutExtension = originalName.substring(0, dotIndex);
-                            String originalExtension = directoryPath.endsWith("Videos") ? ".mp4" : ".png";
-                            originalName.substring(dotIndex);
+                            String currentExtension = originalName.substring(dotIndex);
+                            if (isHiding == currentExtension.equals(".deb")) continue; // Already in the target state
+                            String rememberedExtension = extensions.get(file.getAbsolutePath());
+                            String originalExtension = rememberedExtension != null ? rememberedExtension
+                                    : directoryPath.endsWith("Videos") ? ".mp4" : ".png"; // Hidden before extensions were kept
                             String newExtension = isHiding ? ".deb" : originalExtension; // Use original extension when showing
                             
                             String newName = nameWithoutExtension + newExtension;
                             File newFile = new File(directory, newName);
+                            if (newFile.exists()) {
+                                Log.e("MainActivity", "Not renaming " + file.getAbsolutePath() + ", " + newName + " exists");
+                                continue;
+                            }
                             
+                            boolean renamed;
                             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
                                 DocumentFile document = DocumentFile.fromFile(file);
-                                if (document.renameTo(newName)) {
-                                    Log.d("MainActivity", "File renamed: " + file.getAbsolutePath() + " to " + newFile.getAbsolutePath());
-                                } else {
-                                    Log.e("MainActivity", "Failed to rename file: " + file.getAbsolutePath());
-                                }
+                                renamed = document.renameTo(newName);
                             } else {
-                                if (file.renameTo(newFile)) {
-                                    Log.d("MainActivity", "File renamed: " + file.getAbsolutePath() + " to " + newFile.getAbsolutePath());
-                                } else {
-                                    Log.e("MainActivity", "Failed to rename file: " + file.getAbsolutePath());
-                                }
+                                renamed = file.renameTo(newFile);
+                            }
+                            if (renamed) {
+                                Log.d("MainActivity", "File renamed: " + file.getAbsolutePath() + " to " + newFile.getAbsolutePath());
+                                if (isHiding) extensions.put(newFile.getAbsolutePath(), currentExtension);
+                            } else {
+                                Log.e("MainActivity", "Failed to rename file: " + file.getAbsolutePath());
                             }
                         }
                     }
                 }
+                if (!isHiding) {
+                    // Keep the extensions of files that could not be restored for the next attempt
+                    extensions.keySet().removeIf(path -> !new File(path).exists());
+                }
+                mediaCatalog.rememberExtensions(directoryPath, extensions);
             }
         }
     }
@@ -1883,94 +2184,39 @@ private void setupPlayerViewTouch() {
             Toast.makeText(this, "No video to save.", Toast.LENGTH_SHORT).show();
             return;
         }
-        pendingFavMovePath = currentlyPlayingVideoPath;
+        markPendingFav(currentlyPlayingVideoPath);
+    }
+
+    private void markPendingFav(String path) {
+        pendingFavMovePath = path;
         Toast.makeText(this, "Will move to Fav after playback.", Toast.LENGTH_SHORT).show();
     }
 
     private void playFavVideos() {
         isFavMode = true;
         isVideoViewActive = true;
-        favVideoPaths = getVideoPathsFromFolder(FAV_DIR);
 
-        if (favVideoPaths == null || favVideoPaths.isEmpty()) {
+        if (getVideoPathsFromFolder(FAV_DIR).isEmpty()) {
             Toast.makeText(this, "No Fav videos found.", Toast.LENGTH_SHORT).show();
             isFavMode = false;
             return;
         }
 
-        Collections.shuffle(favVideoPaths);
-
-        currentVideoIndex = 0;
-        playNextFavVideo();
+        playNextFavVideo(weightedPick(FAV_DIR, MediaCatalog.TYPE_VIDEO));
     }
 
     private void playNextFavVideo() {
-    if (favVideoPaths == null || favVideoPaths.isEmpty()) {
-        Toast.makeText(this, "No Fav videos found.", Toast.LENGTH_SHORT).show();
-        return;
+        playNextFavVideo(null);
     }
-    if (currentVideoIndex >= favVideoPaths.size()) {
-        currentVideoIndex = 0;
-    }
-    String videoPath = favVideoPaths.get(currentVideoIndex);
-    currentVideoIndex++;
-    currentlyPlayingVideoPath = videoPath;
-
-    // Set orientation/layout based on video dimensions
-    int[] dims = getVideoDimensions(videoPath);
-    if (dims != null && dims[0] > 0 && dims[1] > 0) {
-        int videoWidth = dims[0];
-        int videoHeight = dims[1];
 
-        int screenWidth = getResources().getDisplayMetrics().widthPixels;
-        int screenHeight = getResources().getDisplayMetrics().heightPixels;
-
-        ViewGroup.LayoutParams params = playerView.getLayoutParams();
-
-        if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE) {
-            // In landscape, fit to screen height
-            params.height = screenHeight;
-            params.width = (int) ((float) screenHeight * videoWidth / videoHeight);
-        } else {
-            // In portrait, fit to screen width
-            params.width = screenWidth;
-            params.height = (int) ((float) screenWidth * videoHeight / videoWidth);
-        }
-
-        playerView.setLayoutParams(params);
-
-        // Center vertically/horizontally in FrameLayout
-        if (playerView.getParent() instanceof FrameLayout) {
-            FrameLayout.LayoutParams flParams = (FrameLayout.LayoutParams) playerView.getLayoutParams();
-            flParams.gravity = Gravity.CENTER;
-            playerView.setLayoutParams(flParams);
-        }
+    private void playNextFavVideo(String pickedPath) {
+    if (pickedPath == null && isVideoViewActive && playbackController.skipToNext("next")) return;
+    String videoPath = pickedPath != null ? pickedPath : nextFromShuffleBag(FAV_DIR, MediaCatalog.TYPE_VIDEO);
+    if (videoPath == null) {
+        Toast.makeText(this, "No Fav videos found.", Toast.LENGTH_SHORT).show();
+        return;
     }
-
-    // Prepare and play video with ExoPlayer
-    playerView.setVisibility(View.VISIBLE);
-    randomImageView.setVisibility(View.GONE);
-
-    exoPlayer.setMediaItem(MediaItem.fromUri(Uri.parse(videoPath)));
-    exoPlayer.prepare();
-    exoPlayer.setPlayWhenReady(true);
-
-    // Set playback speed
-    float speed = playbackSpeeds[currentSpeedIndex];
-    exoPlayer.setPlaybackParameters(new PlaybackParameters(speed));
-
-    // Listen for video end
-    exoPlayer.addListener(new com.google.android.exoplayer2.Player.Listener() {
-        @Override
-        public void onPlaybackStateChanged(int state) {
-            if (state == com.google.android.exoplayer2.Player.STATE_ENDED) {
-                playNextFavVideo();
-                movePendingFavIfNeeded();
-            }
-        }
-    });
-
-    updateVideoProgressLabelExo();
+    playbackController.play(videoPath, pickedPath != null ? "pick" : "next");
     movePendingFavIfNeeded();
 }
 
@@ -1981,6 +2227,7 @@ private void setupPlayerViewTouch() {
             if (!destFile.exists()) {
                 boolean moved = srcFile.renameTo(destFile);
                 if (moved) {
+                    mediaCatalog.setFavourite(destFile.getAbsolutePath(), true);
                     Toast.makeText(this, "Moved to Fav!", Toast.LENGTH_SHORT).show();
                 } else {
                     Toast.makeText(this, "Failed to move to Fav.", Toast.LENGTH_SHORT).show();
@@ -2004,98 +2251,128 @@ private void setupPlayerViewTouch() {
     @Override
     public void onConfigurationChanged(@NonNull Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
-        // Re-apply video layout for the current video
-        playVideoAfterOrientationChange();
+        // Configuration changes are handled here (configChanges), so the player survives rotation;
+        // only its view needs the new screen shape
+        if (playbackController != null) {
+            playbackController.relayout();
+        }
     }
 
-    private void playVideoAfterOrientationChange() {
-    String videoPath = currentlyPlayingVideoPath;
-    if (videoPath == null) return;
-
-    // Set orientation/layout based on video dimensions
-    int[] dims = getVideoDimensions(videoPath);
-    if (dims != null && dims[0] > 0 && dims[1] > 0) {
-        int videoWidth = dims[0];
-        int videoHeight = dims[1];
-
-        int screenWidth = getResources().getDisplayMetrics().widthPixels;
-        int screenHeight = getResources().getDisplayMetrics().heightPixels;
-
-        ViewGroup.LayoutParams params = playerView.getLayoutParams();
-
-        if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE) {
-            // In landscape, fit to screen height
-            params.height = screenHeight;
-            params.width = (int) ((float) screenHeight * videoWidth / videoHeight);
-        } else {
-            // In portrait, fit to screen width
-            params.width = screenWidth;
-            params.height = (int) ((float) screenWidth * videoHeight / videoWidth);
+    private void startVideoMetadataWorker() {
+        Data inputData = new Data.Builder()
+                .putStringArray(VideoMetadataWorker.KEY_FOLDERS, new String[]{DESI_DIR, FOREIGN_DIR, FAV_DIR, VIDEOS_DIR})
+                .build();
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(VideoMetadataWorker.class)
+                .setInputData(inputData)
+                .build();
+        WorkContinuation work = WorkManager.getInstance(this)
+                .beginUniqueWork("video_metadata", ExistingWorkPolicy.KEEP, workRequest);
+        if (AppSettings.get(this).getBoolean(FaststartWorker.KEY_ENABLED, false)) {
+            // Rewrites whatever the metadata pass found with moov at the end
+            OneTimeWorkRequest faststartRequest = new OneTimeWorkRequest.Builder(FaststartWorker.class)
+                    .setConstraints(new Constraints.Builder()
+                            .setRequiresBatteryNotLow(true)
+                            .setRequiresStorageNotLow(true)
+                            .build())
+                    .build();
+            work = work.then(faststartRequest);
         }
+        work.enqueue();
+    }
 
-        playerView.setLayoutParams(params);
-
-        // Center vertically/horizontally in FrameLayout
-        if (playerView.getParent() instanceof FrameLayout) {
-            FrameLayout.LayoutParams flParams = (FrameLayout.LayoutParams) playerView.getLayoutParams();
-            flParams.gravity = Gravity.CENTER;
-            playerView.setLayoutParams(flParams);
+    private void toggleFaststart() {
+        SharedPreferences prefs = AppSettings.get(this);
+        if (prefs.getBoolean(FaststartWorker.KEY_ENABLED, false)) {
+            prefs.edit().putBoolean(FaststartWorker.KEY_ENABLED, false).apply();
+            Toast.makeText(this, "Faststart remux off", Toast.LENGTH_SHORT).show();
+            return;
         }
+        // Videos are rewritten in place, so turning it on needs an explicit yes
+        new AlertDialog.Builder(this)
+                .setTitle("Rewrite videos for instant start?")
+                .setMessage("MP4 videos that keep their index at the end are rewritten in place with the "
+                        + "index first. The audio and video data are not re-encoded, and each copy is "
+                        + "checked before it replaces the original.")
+                .setPositiveButton("Rewrite", (dialog, which) -> {
+                    prefs.edit().putBoolean(FaststartWorker.KEY_ENABLED, true).apply();
+                    Toast.makeText(this, "Faststart remux on", Toast.LENGTH_SHORT).show();
+                    startVideoMetadataWorker();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void startImageReencodeWorker() {
+        if (!AppSettings.get(this).getBoolean(ImageReencodeWorker.KEY_ENABLED, false)) {
+            return;
+        }
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(ImageReencodeWorker.class)
+                .setInputData(new Data.Builder()
+                        .putStringArray(ImageReencodeWorker.KEY_FOLDERS, new String[]{PHOTOS_DIR})
+                        .build())
+                .setConstraints(new Constraints.Builder()
+                        .setRequiresCharging(true)
+                        .setRequiresBatteryNotLow(true)
+                        .setRequiresStorageNotLow(true)
+                        .build())
+                .build();
+        WorkManager.getInstance(this).enqueueUniqueWork("image_reencode", ExistingWorkPolicy.KEEP, workRequest);
     }
 
-    // Prepare and play video with ExoPlayer
-    playerView.setVisibility(View.VISIBLE);
-    randomImageView.setVisibility(View.GONE);
-
-    exoPlayer.setMediaItem(MediaItem.fromUri(Uri.parse(videoPath)));
-    exoPlayer.prepare();
-    exoPlayer.setPlayWhenReady(true);
-
-    // Set playback speed
-    float speed = playbackSpeeds[currentSpeedIndex];
-    exoPlayer.setPlaybackParameters(new PlaybackParameters(speed));
-
-    // Listen for video end
-    exoPlayer.addListener(new com.google.android.exoplayer2.Player.Listener() {
-        @Override
-        public void onPlaybackStateChanged(int state) {
-            if (state == com.google.android.exoplayer2.Player.STATE_ENDED) {
-                if (isFavMode) playNextFavVideo();
-                else playNextRandomVideo();
-                movePendingFavIfNeeded();
-            }
+    private void toggleImageReencode() {
+        SharedPreferences prefs = AppSettings.get(this);
+        if (prefs.getBoolean(ImageReencodeWorker.KEY_ENABLED, false)) {
+            prefs.edit().putBoolean(ImageReencodeWorker.KEY_ENABLED, false).apply();
+            String converted = describeReencoded();
+            Toast.makeText(this, converted.isEmpty() ? "Image re-encoding off" : "Image re-encoding off. " + converted,
+                    Toast.LENGTH_LONG).show();
+            return;
         }
-    });
-
-    updateVideoProgressLabelExo();
-    movePendingFavIfNeeded();
-}
-
-    private int[] getVideoDimensions(String videoPath) {
-        android.media.MediaMetadataRetriever retriever = new android.media.MediaMetadataRetriever();
-        try {
-            retriever.setDataSource(videoPath);
-            int width = Integer.parseInt(retriever.extractMetadata(android.media.MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
-            int height = Integer.parseInt(retriever.extractMetadata(android.media.MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
-            return new int[]{width, height};
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to get video dimensions: " + e.getMessage());
-            return null;
-        } finally {
-            try {
-                retriever.release();
-            } catch (Exception e) {
-                Log.e(TAG, "Error releasing MediaMetadataRetriever: " + e.getMessage());
-            }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            Toast.makeText(this, "Lossless re-encoding needs Android 10 or later", Toast.LENGTH_SHORT).show();
+            return;
         }
+        // The originals are replaced, so turning it on needs an explicit yes
+        String converted = describeReencoded();
+        new AlertDialog.Builder(this)
+                .setTitle("Re-encode large photos?")
+                .setMessage("While charging, PNG and BMP photos over 4 MB in the Photos folder are "
+                        + "converted to lossless WebP and the original files are deleted. "
+                        + "Each copy is checked pixel for pixel first, and 16-bit photos or ones with "
+                        + "colour profiles or embedded metadata are left alone." + (converted.isEmpty() ? "" : "\n\n" + converted + "."))
+                .setPositiveButton("Re-encode", (dialog, which) -> {
+                    prefs.edit().putBoolean(ImageReencodeWorker.KEY_ENABLED, true).apply();
+                    Toast.makeText(this, "Re-encoding large PNG/BMP while charging", Toast.LENGTH_SHORT).show();
+                    startImageReencodeWorker();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    // e.g. "12 converted so far (9 .png, 3 .bmp)", or "" when none have been
+    private String describeReencoded() {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (String extension : mediaCatalog.getOriginalExtensions(PHOTOS_DIR).values()) {
+            Integer count = counts.get(extension);
+            counts.put(extension, count == null ? 1 : count + 1);
+        }
+        if (counts.isEmpty()) return "";
+        int total = 0;
+        StringBuilder detail = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            total += entry.getValue();
+            if (detail.length() > 0) detail.append(", ");
+            detail.append(entry.getValue()).append(' ').append(entry.getKey());
+        }
+        return total + " converted so far (" + detail + ")";
     }
 
     private boolean isMuted = true;
 
     private void toggleMute() {
         isMuted = !isMuted;
-        if (exoPlayer != null) {
-            exoPlayer.setVolume(isMuted ? 0f : 1f);
+        if (playbackController != null) {
+            playbackController.setVolume(isMuted ? 0f : 1f);
         }
         updateMuteIcon();
     }
@@ -0,0 +1,561 @@
+package com.example.randomphotoselector;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Persistent index of the library folders. Reads are served from the database (cached in memory
+// per folder); only sync() lists directories, and it skips folders whose mtime is unchanged.
+public class MediaCatalog extends SQLiteOpenHelper {
+
+    private static final String TAG = "MediaCatalog";
+    private static final String DATABASE_NAME = "media_catalog.db";
+    private static final int DATABASE_VERSION = 4;
+
+    public static final int TYPE_PHOTO = 0;
+    public static final int TYPE_VIDEO = 1;
+
+    private static final String TABLE_MEDIA = "media";
+    private static final String TABLE_FOLDERS = "folders";
+    private static final String TABLE_HIDDEN = "hidden_files";
+
+    private static MediaCatalog instance;
+
+    // Per-item signals used by WeightedSelector
+    public static class MediaSignals {
+        public final String path;
+        public final boolean favourite;
+        public final int playCount;
+        public final long lastPlayed;
+        public final float boost;
+
+        MediaSignals(String path, boolean favourite, int playCount, long lastPlayed, float boost) {
+            this.path = path;
+            this.favourite = favourite;
+            this.playCount = playCount;
+            this.lastPlayed = lastPlayed;
+            this.boost = boost;
+        }
+    }
+
+    // Bumped when files are added, removed or renamed, so readers holding a derived per-file
+    // structure (alias tables) know to rebuild it
+    private final AtomicLong fileVersion = new AtomicLong();
+
+    // Signal rows (play, favourite, boost) as they change, newest last, so readers can patch their
+    // weights per item instead of rebuilding on every play. signalVersion numbers the last entry.
+    private static final int SIGNAL_LOG_SIZE = 256;
+    private final ArrayDeque<MediaSignals> signalLog = new ArrayDeque<>();
+    private long signalVersion = 0;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    // folder path -> type -> paths, filled lazily from the database
+    private final Map<String, Map<Integer, IndexedPathList>> cache = new HashMap<>();
+
+    public static synchronized MediaCatalog getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaCatalog(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MediaCatalog(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_MEDIA + " ("
+                + "path TEXT PRIMARY KEY, "
+                + "folder TEXT NOT NULL, "
+                + "size INTEGER NOT NULL, "
+                + "mtime INTEGER NOT NULL, "
+                + "media_type INTEGER NOT NULL, "
+                + "favourite INTEGER NOT NULL DEFAULT 0, "
+                + "play_count INTEGER NOT NULL DEFAULT 0, "
+                + "last_played INTEGER NOT NULL DEFAULT 0, "
+                + "boost REAL NOT NULL DEFAULT 1, "
+                + "original_ext TEXT)"); // Set when a file was re-encoded under a new extension
+        db.execSQL("CREATE INDEX idx_media_folder ON " + TABLE_MEDIA + " (folder, media_type)");
+        db.execSQL("CREATE INDEX idx_media_folder_path ON " + TABLE_MEDIA + " (folder, media_type, path)");
+        db.execSQL("CREATE TABLE " + TABLE_FOLDERS + " ("
+                + "path TEXT PRIMARY KEY, "
+                + "mtime INTEGER NOT NULL)");
+        createHiddenTable(db);
+    }
+
+    private static void createHiddenTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_HIDDEN + " ("
+                + "path TEXT PRIMARY KEY, "
+                + "folder TEXT NOT NULL, "
+                + "extension TEXT NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE " + TABLE_MEDIA + " ADD COLUMN favourite INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_MEDIA + " ADD COLUMN play_count INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_MEDIA + " ADD COLUMN last_played INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_MEDIA + " ADD COLUMN boost REAL NOT NULL DEFAULT 1");
+        }
+        if (oldVersion < 3) {
+            db.execSQL("CREATE INDEX idx_media_folder_path ON " + TABLE_MEDIA + " (folder, media_type, path)");
+        }
+        if (oldVersion < 4) {
+            db.execSQL("ALTER TABLE " + TABLE_MEDIA + " ADD COLUMN original_ext TEXT");
+            createHiddenTable(db);
+        }
+    }
+
+    public long getFileVersion() {
+        return fileVersion.get();
+    }
+
+    public synchronized long getSignalVersion() {
+        return signalVersion;
+    }
+
+    // Signal rows changed after sinceVersion, oldest first; null if the log no longer reaches back
+    // that far and the reader has to re-read everything
+    public synchronized List<MediaSignals> getSignalChanges(long sinceVersion) {
+        long missed = signalVersion - sinceVersion;
+        if (missed > signalLog.size()) return null;
+        List<MediaSignals> changes = new ArrayList<>(signalLog);
+        return changes.subList(changes.size() - (int) missed, changes.size());
+    }
+
+    private void logSignals(String path) {
+        MediaSignals signals = null;
+        try (Cursor cursor = getReadableDatabase().query(TABLE_MEDIA,
+                new String[]{"path", "favourite", "play_count", "last_played", "boost"},
+                "path = ?", new String[]{path}, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                signals = new MediaSignals(cursor.getString(0), cursor.getInt(1) != 0,
+                        cursor.getInt(2), cursor.getLong(3), cursor.getFloat(4));
+            }
+        }
+        if (signals == null) return;
+        synchronized (this) {
+            signalLog.addLast(signals);
+            if (signalLog.size() > SIGNAL_LOG_SIZE) signalLog.removeFirst();
+            signalVersion++;
+        }
+    }
+
+    public static int getMediaType(File file) {
+        if (RandomPhotoSelector.isImageFile(file)) return TYPE_PHOTO;
+        if (RandomVideoSelector.isVideoFile(file)) return TYPE_VIDEO;
+        return -1;
+    }
+
+    // Returns a copy of the catalogued paths of the given type in a folder. Never lists the
+    // directory unless the folder has not been synced even once.
+    public List<String> getPaths(String folderPath, int mediaType) {
+        if (folderPath == null) return new ArrayList<>();
+        ensureLoaded(folderPath);
+        synchronized (cache) {
+            IndexedPathList paths = cache.get(folderPath).get(mediaType);
+            return paths != null ? paths.toList() : new ArrayList<>();
+        }
+    }
+
+    // One page of a folder's paths in path order, starting after the given path (null for the
+    // first page). Keyset paging seeks straight to the page in the (folder, media_type, path)
+    // index, so a deep page costs the same as the first and files added or removed between pages
+    // neither repeat nor skip entries. Call off the main thread.
+    public List<String> getPathsPage(String folderPath, int mediaType, String afterPath, int limit) {
+        List<String> paths = new ArrayList<>();
+        if (folderPath == null) return paths;
+        if (getFolderMtime(folderPath) < 0) {
+            sync(folderPath);
+        }
+        SQLiteDatabase db = getReadableDatabase();
+        String selection = "folder = ? AND media_type = ?";
+        String[] args = {folderPath, String.valueOf(mediaType)};
+        if (afterPath != null) {
+            selection += " AND path > ?";
+            args = new String[]{folderPath, String.valueOf(mediaType), afterPath};
+        }
+        try (Cursor cursor = db.query(TABLE_MEDIA, new String[]{"path"}, selection, args,
+                null, null, "path", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                paths.add(cursor.getString(0));
+            }
+        }
+        return paths;
+    }
+
+    // O(1) uniform pick without copying the folder's path list
+    public String getRandomPath(String folderPath, int mediaType, Random random) {
+        if (folderPath == null) return null;
+        ensureLoaded(folderPath);
+        synchronized (cache) {
+            IndexedPathList paths = cache.get(folderPath).get(mediaType);
+            if (paths == null || paths.size() == 0) return null;
+            return paths.get(random.nextInt(paths.size()));
+        }
+    }
+
+    private void ensureLoaded(String folderPath) {
+        synchronized (cache) {
+            if (cache.containsKey(folderPath)) return;
+        }
+        if (getFolderMtime(folderPath) < 0) {
+            sync(folderPath);
+        }
+        Map<Integer, IndexedPathList> byType = loadFolder(folderPath);
+        synchronized (cache) {
+            if (!cache.containsKey(folderPath)) {
+                cache.put(folderPath, byType);
+            }
+        }
+    }
+
+    public boolean contains(String path) {
+        String folderPath = new File(path).getParent();
+        synchronized (cache) {
+            Map<Integer, IndexedPathList> byType = cache.get(folderPath);
+            if (byType == null) return new File(path).exists();
+            for (IndexedPathList paths : byType.values()) {
+                if (paths.contains(path)) return true;
+            }
+            return false;
+        }
+    }
+
+    // Applies filesystem events (path -> present) in a single transaction. Each entry costs one
+    // stat and one row write, and updates the in-memory lists in O(1).
+    public void applyChanges(Map<String, Boolean> changes) {
+        if (changes.isEmpty()) return;
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+                String path = change.getKey();
+                File file = new File(path);
+                int mediaType = getMediaType(file);
+                if (mediaType < 0) continue;
+
+                if (change.getValue() && file.isFile()) {
+                    values.clear();
+                    values.put("path", path);
+                    values.put("folder", file.getParent());
+                    values.put("size", file.length());
+                    values.put("mtime", file.lastModified());
+                    values.put("media_type", mediaType);
+                    upsertFile(db, values);
+                    updateCache(file.getParent(), mediaType, path, true);
+                } else {
+                    db.delete(TABLE_MEDIA, "path = ?", new String[]{path});
+                    updateCache(file.getParent(), mediaType, path, false);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        fileVersion.incrementAndGet();
+    }
+
+    // Updates the file columns in place so favourite/play count/boost survive a content change
+    private void upsertFile(SQLiteDatabase db, ContentValues values) {
+        String path = values.getAsString("path");
+        if (db.update(TABLE_MEDIA, values, "path = ?", new String[]{path}) == 0) {
+            db.insert(TABLE_MEDIA, null, values);
+        }
+    }
+
+    // Swaps a file for a re-encoded copy under a new name, keeping its row and signals and
+    // recording the extension it had before
+    public void replaceFile(String oldPath, String newPath, String originalExtension) {
+        File file = new File(newPath);
+        int mediaType = getMediaType(file);
+        if (mediaType < 0) return;
+        ContentValues values = new ContentValues();
+        values.put("path", newPath);
+        values.put("folder", file.getParent());
+        values.put("size", file.length());
+        values.put("mtime", file.lastModified());
+        values.put("media_type", mediaType);
+        values.put("original_ext", originalExtension);
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_MEDIA, "path = ?", new String[]{newPath});
+            if (db.update(TABLE_MEDIA, values, "path = ?", new String[]{oldPath}) == 0) {
+                db.insert(TABLE_MEDIA, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        updateCache(new File(oldPath).getParent(), getMediaType(new File(oldPath)), oldPath, false);
+        updateCache(file.getParent(), mediaType, newPath, true);
+        fileVersion.incrementAndGet();
+    }
+
+    // Files replaceFile() has swapped for a re-encoded copy, with the extension each had before
+    // (current path -> ".ext")
+    public Map<String, String> getOriginalExtensions(String folderPath) {
+        Map<String, String> extensions = new HashMap<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_MEDIA, new String[]{"path", "original_ext"},
+                "folder = ? AND original_ext IS NOT NULL", new String[]{folderPath}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                extensions.put(cursor.getString(0), cursor.getString(1));
+            }
+        }
+        return extensions;
+    }
+
+    // Real extensions of files renameFiles() has hidden under a neutral one (hidden path -> ".ext")
+    public void rememberExtensions(String folderPath, Map<String, String> extensions) {
+        if (extensions.isEmpty()) return;
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Map.Entry<String, String> entry : extensions.entrySet()) {
+                values.clear();
+                values.put("path", entry.getKey());
+                values.put("folder", folderPath);
+                values.put("extension", entry.getValue());
+                db.insertWithOnConflict(TABLE_HIDDEN, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Returns and forgets the remembered extensions for a folder
+    public Map<String, String> takeExtensions(String folderPath) {
+        Map<String, String> extensions = new HashMap<>();
+        SQLiteDatabase db = getWritableDatabase();
+        try (Cursor cursor = db.query(TABLE_HIDDEN, new String[]{"path", "extension"},
+                "folder = ?", new String[]{folderPath}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                extensions.put(cursor.getString(0), cursor.getString(1));
+            }
+        }
+        db.delete(TABLE_HIDDEN, "folder = ?", new String[]{folderPath});
+        return extensions;
+    }
+
+    public List<MediaSignals> getSignals(String folderPath, int mediaType) {
+        List<MediaSignals> signals = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_MEDIA,
+                new String[]{"path", "favourite", "play_count", "last_played", "boost"},
+                "folder = ? AND media_type = ?", new String[]{folderPath, String.valueOf(mediaType)},
+                null, null, null)) {
+            while (cursor.moveToNext()) {
+                signals.add(new MediaSignals(cursor.getString(0), cursor.getInt(1) != 0,
+                        cursor.getInt(2), cursor.getLong(3), cursor.getFloat(4)));
+            }
+        }
+        return signals;
+    }
+
+    // Signal writes are small and frequent, so they run off the caller's thread
+    public void recordPlay(String path) {
+        long now = System.currentTimeMillis();
+        writeExecutor.execute(() -> {
+            getWritableDatabase().execSQL("UPDATE " + TABLE_MEDIA
+                    + " SET play_count = play_count + 1, last_played = ? WHERE path = ?",
+                    new Object[]{now, path});
+            logSignals(path);
+        });
+    }
+
+    public void setFavourite(String path, boolean favourite) {
+        writeExecutor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put("favourite", favourite ? 1 : 0);
+            updateSignals(path, values);
+        });
+    }
+
+    public void setBoost(String path, float boost) {
+        writeExecutor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put("boost", boost);
+            updateSignals(path, values);
+        });
+    }
+
+    private void updateSignals(String path, ContentValues signalValues) {
+        SQLiteDatabase db = getWritableDatabase();
+        if (db.update(TABLE_MEDIA, signalValues, "path = ?", new String[]{path}) == 0) {
+            // Not catalogued yet (e.g. a move the observer has not flushed): insert it now
+            File file = new File(path);
+            int mediaType = getMediaType(file);
+            if (!file.isFile() || mediaType < 0) return;
+            ContentValues values = new ContentValues(signalValues);
+            values.put("path", path);
+            values.put("folder", file.getParent());
+            values.put("size", file.length());
+            values.put("mtime", file.lastModified());
+            values.put("media_type", mediaType);
+            db.insert(TABLE_MEDIA, null, values);
+            updateCache(file.getParent(), mediaType, path, true);
+            fileVersion.incrementAndGet();
+        }
+        logSignals(path);
+    }
+
+    private void updateCache(String folderPath, int mediaType, String path, boolean present) {
+        synchronized (cache) {
+            Map<Integer, IndexedPathList> byType = cache.get(folderPath);
+            if (byType == null) return; // Not loaded yet; the next getPaths() reads the database
+            IndexedPathList paths = byType.get(mediaType);
+            if (paths == null) {
+                paths = new IndexedPathList();
+                byType.put(mediaType, paths);
+            }
+            if (present) {
+                paths.add(path);
+            } else {
+                paths.remove(path);
+            }
+        }
+    }
+
+    // Returns true if any folder had changed
+    public boolean syncAll(String... folderPaths) {
+        boolean changed = false;
+        for (String folderPath : folderPaths) {
+            changed |= sync(folderPath);
+            changed |= removeSubfolderRows(folderPath);
+        }
+        return changed;
+    }
+
+    // Rows for files in subdirectories of a library folder, written by older builds whose
+    // observer watched recursively. Folders are only catalogued at the top level, so nothing
+    // serves or refreshes these. The range covers exactly the paths starting with folderPath + "/".
+    private boolean removeSubfolderRows(String folderPath) {
+        if (folderPath == null) return false;
+        int removed = getWritableDatabase().delete(TABLE_MEDIA, "folder > ? AND folder < ?",
+                new String[]{folderPath + "/", folderPath + "0"}); // '0' follows '/'
+        if (removed > 0) {
+            Log.d(TAG, "Removed " + removed + " subfolder rows under " + folderPath);
+            fileVersion.incrementAndGet();
+        }
+        return removed > 0;
+    }
+
+    // Change-detection pass: the only place the catalog touches the filesystem. Folders whose
+    // mtime matches the recorded one are skipped without being listed.
+    public boolean sync(String folderPath) {
+        if (folderPath == null) return false;
+        File folder = new File(folderPath);
+        if (!folder.exists() || !folder.isDirectory()) return false;
+
+        long folderMtime = folder.lastModified();
+        if (folderMtime == getFolderMtime(folderPath)) {
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, long[]> known = new HashMap<>();
+        SQLiteDatabase db = getWritableDatabase();
+        try (Cursor cursor = db.query(TABLE_MEDIA, new String[]{"path", "size", "mtime"},
+                "folder = ?", new String[]{folderPath}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                known.put(cursor.getString(0), new long[]{cursor.getLong(1), cursor.getLong(2)});
+            }
+        }
+
+        int added = 0, updated = 0, removed = 0;
+        db.beginTransaction();
+        try {
+            File[] files = folder.listFiles();
+            if (files != null) {
+                ContentValues values = new ContentValues();
+                for (File file : files) {
+                    if (!file.isFile()) continue;
+                    int mediaType = getMediaType(file);
+                    if (mediaType < 0) continue;
+
+                    String path = file.getAbsolutePath();
+                    long size = file.length();
+                    long mtime = file.lastModified();
+                    long[] row = known.remove(path);
+                    if (row != null && row[0] == size && row[1] == mtime) continue;
+
+                    values.clear();
+                    values.put("path", path);
+                    values.put("folder", folderPath);
+                    values.put("size", size);
+                    values.put("mtime", mtime);
+                    values.put("media_type", mediaType);
+                    upsertFile(db, values);
+                    if (row == null) added++; else updated++;
+                }
+            }
+            for (String stale : known.keySet()) {
+                db.delete(TABLE_MEDIA, "path = ?", new String[]{stale});
+                removed++;
+            }
+
+            ContentValues folderValues = new ContentValues();
+            folderValues.put("path", folderPath);
+            folderValues.put("mtime", folderMtime);
+            db.insertWithOnConflict(TABLE_FOLDERS, null, folderValues, SQLiteDatabase.CONFLICT_REPLACE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Map<Integer, IndexedPathList> byType = loadFolder(folderPath);
+        synchronized (cache) {
+            cache.put(folderPath, byType);
+        }
+        fileVersion.incrementAndGet();
+        Log.d(TAG, "Synced " + folderPath + ": +" + added + " ~" + updated + " -" + removed
+                + " in " + (System.currentTimeMillis() - start) + "ms");
+        return true;
+    }
+
+    private long getFolderMtime(String folderPath) {
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_FOLDERS, new String[]{"mtime"},
+                "path = ?", new String[]{folderPath}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+
+    private Map<Integer, IndexedPathList> loadFolder(String folderPath) {
+        Map<Integer, IndexedPathList> byType = new HashMap<>();
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_MEDIA, new String[]{"path", "media_type"},
+                "folder = ?", new String[]{folderPath}, null, null, "path")) {
+            while (cursor.moveToNext()) {
+                int mediaType = cursor.getInt(1);
+                IndexedPathList paths = byType.get(mediaType);
+                if (paths == null) {
+                    paths = new IndexedPathList();
+                    byType.put(mediaType, paths);
+                }
+                paths.add(cursor.getString(0));
+            }
+        }
+        return byType;
+    }
+}
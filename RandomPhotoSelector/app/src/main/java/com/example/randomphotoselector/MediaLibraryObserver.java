@@ -0,0 +1,132 @@
+package com.example.randomphotoselector;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Watches the library folders and feeds create/move/delete events into the MediaCatalog. Only the
+// top level is watched, the same files MediaCatalog.sync() lists, so every row written here is
+// one the folder queries serve. Events are coalesced per path and flushed in one batch once the
+// folder has been quiet for DEBOUNCE_MS, so a bulk move of thousands of files costs one transaction.
+public class MediaLibraryObserver {
+
+    private static final String TAG = "MediaLibraryObserver";
+    private static final long DEBOUNCE_MS = 300;
+    private static final long MAX_FLUSH_DELAY_MS = 2000; // Flush at least this often during long storms
+    private static final int IN_ISDIR = 0x40000000;
+    private static final int EVENT_MASK = FileObserver.CREATE | FileObserver.CLOSE_WRITE
+            | FileObserver.MOVED_TO | FileObserver.MOVED_FROM | FileObserver.DELETE
+            | FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+
+    private final MediaCatalog catalog;
+    private final String[] rootPaths;
+    private final Map<String, DirectoryObserver> observers = new HashMap<>();
+    private final Map<String, Boolean> pendingChanges = new LinkedHashMap<>();
+    private HandlerThread eventThread;
+    private volatile Handler eventHandler;
+    private long firstPendingTime = 0;
+
+    private final Runnable flushRunnable = this::flushPendingChanges;
+
+    public MediaLibraryObserver(MediaCatalog catalog, String... rootPaths) {
+        this.catalog = catalog;
+        this.rootPaths = rootPaths;
+    }
+
+    public synchronized void start() {
+        if (eventThread != null) return;
+        eventThread = new HandlerThread(TAG);
+        eventThread.start();
+        eventHandler = new Handler(eventThread.getLooper());
+        for (String rootPath : rootPaths) {
+            if (rootPath != null) watch(new File(rootPath));
+        }
+        Log.d(TAG, "Watching " + observers.size() + " directories");
+    }
+
+    public synchronized void stop() {
+        if (eventThread == null) return;
+        for (DirectoryObserver observer : observers.values()) {
+            observer.stopWatching();
+        }
+        observers.clear();
+        eventHandler.removeCallbacks(flushRunnable);
+        eventHandler.post(this::flushPendingChanges);
+        eventThread.quitSafely();
+        eventThread = null;
+    }
+
+    private void watch(File directory) {
+        if (!directory.isDirectory()) return;
+        String path = directory.getAbsolutePath();
+        if (observers.containsKey(path)) return;
+        DirectoryObserver observer = new DirectoryObserver(path);
+        observers.put(path, observer);
+        observer.startWatching();
+    }
+
+    private synchronized void unwatch(String directoryPath) {
+        DirectoryObserver observer = observers.remove(directoryPath);
+        if (observer != null) observer.stopWatching();
+    }
+
+    // Runs on the event thread
+    private void onDirectoryEvent(String directoryPath, int event, String name) {
+        int type = event & FileObserver.ALL_EVENTS;
+        if (type == FileObserver.DELETE_SELF || type == FileObserver.MOVE_SELF) {
+            unwatch(directoryPath);
+            return;
+        }
+        if (name == null || (event & IN_ISDIR) != 0) return; // Subdirectories are not catalogued
+        File file = new File(directoryPath, name);
+        if (MediaCatalog.getMediaType(file) < 0) return;
+
+        boolean present = type == FileObserver.CREATE || type == FileObserver.CLOSE_WRITE
+                || type == FileObserver.MOVED_TO;
+        if (pendingChanges.isEmpty()) {
+            firstPendingTime = SystemClock.uptimeMillis();
+        }
+        pendingChanges.put(file.getAbsolutePath(), present);
+
+        eventHandler.removeCallbacks(flushRunnable);
+        long waited = SystemClock.uptimeMillis() - firstPendingTime;
+        eventHandler.postDelayed(flushRunnable, Math.max(0, Math.min(DEBOUNCE_MS, MAX_FLUSH_DELAY_MS - waited)));
+    }
+
+    private void flushPendingChanges() {
+        if (pendingChanges.isEmpty()) return;
+        Map<String, Boolean> changes = new LinkedHashMap<>(pendingChanges);
+        pendingChanges.clear();
+        try {
+            catalog.applyChanges(changes);
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying " + changes.size() + " changes to catalog", e);
+            return;
+        }
+        Log.d(TAG, "Applied " + changes.size() + " changes");
+    }
+
+    private class DirectoryObserver extends FileObserver {
+        private final String directoryPath;
+
+        DirectoryObserver(String directoryPath) {
+            super(directoryPath, EVENT_MASK);
+            this.directoryPath = directoryPath;
+        }
+
+        @Override
+        public void onEvent(int event, String path) {
+            Handler handler = eventHandler;
+            if (handler != null) {
+                handler.post(() -> onDirectoryEvent(directoryPath, event, path));
+            }
+        }
+    }
+}
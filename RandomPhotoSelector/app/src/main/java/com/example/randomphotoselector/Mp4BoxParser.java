@@ -0,0 +1,220 @@
+package com.example.randomphotoselector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Minimal ISO-BMFF (MP4/MOV) reader for the metadata the player needs. It walks box headers with
+// positional reads and only loads the few small boxes it needs (mvhd, tkhd, mdhd, hdlr and the
+// first stsd entry), so a file costs a handful of reads of a few hundred bytes each, wherever the
+// moov box sits. Plain Java, no Android dependencies.
+public final class Mp4BoxParser {
+
+    public static class Mp4Info {
+        public final int width;
+        public final int height;
+        public final int[] matrix;    // tkhd matrix {a, b, u, c, d, v, x, y, w}; a-d, x, y are 16.16, u, v, w 2.30
+        public final long durationMs;
+        public final String fourcc;   // Video sample entry type, e.g. "avc1", "hvc1"
+        public final boolean moovAtEnd; // moov follows the media data, so players must seek to the tail first
+
+        Mp4Info(int width, int height, int[] matrix, long durationMs, String fourcc, boolean moovAtEnd) {
+            this.width = width;
+            this.height = height;
+            this.matrix = matrix;
+            this.durationMs = durationMs;
+            this.fourcc = fourcc;
+            this.moovAtEnd = moovAtEnd;
+        }
+
+        // Clockwise rotation in degrees described by the matrix, snapped to 0/90/180/270
+        public int rotation() {
+            if (matrix == null) return 0;
+            double degrees = Math.toDegrees(Math.atan2(matrix[1], matrix[0]));
+            int rotation = (int) Math.round(degrees / 90.0) * 90;
+            return ((rotation % 360) + 360) % 360;
+        }
+    }
+
+    private static final int MAX_HEADER_READ = 128; // Largest fixed-size part of any box we read
+    private static final int MAX_DEPTH = 8;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_READ);
+
+    // Parse state for the video track currently being walked
+    private long movieDurationMs = -1;
+    private int trackWidth, trackHeight;
+    private int[] trackMatrix;
+    private long trackDurationMs;
+    private String trackHandler;
+    private String trackFourcc;
+    private int entryWidth, entryHeight;
+    private boolean mdatSeen;
+    private boolean moovAtEnd;
+    private Mp4Info video;
+
+    private Mp4BoxParser(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    public static Mp4Info parse(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return parse(raf.getChannel());
+        }
+    }
+
+    // Returns the first video track's metadata, or null if the file has no moov or no video track
+    public static Mp4Info parse(FileChannel channel) throws IOException {
+        Mp4BoxParser parser = new Mp4BoxParser(channel);
+        parser.walk(0, channel.size(), 0);
+        Mp4Info video = parser.video;
+        if (video == null) return null;
+        if (video.durationMs <= 0 && parser.movieDurationMs > 0) {
+            video = new Mp4Info(video.width, video.height, video.matrix, parser.movieDurationMs,
+                    video.fourcc, video.moovAtEnd);
+        }
+        return video;
+    }
+
+    private void walk(long start, long end, int depth) throws IOException {
+        long position = start;
+        while (position + 8 <= end && video == null) {
+            ByteBuffer header = read(position, 16, end);
+            if (header.remaining() < 8) return;
+            long size = header.getInt() & 0xffffffffL;
+            int type = header.getInt();
+            long headerSize = 8;
+            if (size == 1) {
+                if (header.remaining() < 8) return;
+                size = header.getLong();
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position; // Box extends to the end of its parent
+            }
+            if (size < headerSize || position + size > end) return; // Truncated or corrupt
+            onBox(type, position + headerSize, position + size, depth);
+            position += size;
+        }
+    }
+
+    private void onBox(int type, long bodyStart, long bodyEnd, int depth) throws IOException {
+        switch (fourcc(type)) {
+            case "mdat":
+                if (depth == 0) mdatSeen = true;
+                break;
+            case "moov":
+                moovAtEnd = mdatSeen;
+                if (depth < MAX_DEPTH) walk(bodyStart, bodyEnd, depth + 1);
+                break;
+            case "mdia":
+            case "minf":
+            case "stbl":
+                if (depth < MAX_DEPTH) walk(bodyStart, bodyEnd, depth + 1);
+                break;
+            case "trak":
+                resetTrack();
+                if (depth < MAX_DEPTH) walk(bodyStart, bodyEnd, depth + 1);
+                if ("vide".equals(trackHandler)) {
+                    int width = trackWidth > 0 ? trackWidth : entryWidth;
+                    int height = trackHeight > 0 ? trackHeight : entryHeight;
+                    video = new Mp4Info(width, height, trackMatrix, trackDurationMs, trackFourcc, moovAtEnd);
+                }
+                break;
+            case "mvhd":
+                movieDurationMs = readDuration(bodyStart, bodyEnd);
+                break;
+            case "tkhd":
+                readTrackHeader(bodyStart, bodyEnd);
+                break;
+            case "mdhd":
+                trackDurationMs = readDuration(bodyStart, bodyEnd);
+                break;
+            case "hdlr": {
+                ByteBuffer body = read(bodyStart, 12, bodyEnd);
+                if (body.remaining() >= 12) trackHandler = fourcc(body.getInt(8));
+                break;
+            }
+            case "stsd":
+                readSampleDescription(bodyStart, bodyEnd);
+                break;
+            default:
+                break; // Everything else is skipped without being read
+        }
+    }
+
+    private void resetTrack() {
+        trackWidth = trackHeight = entryWidth = entryHeight = 0;
+        trackMatrix = null;
+        trackDurationMs = 0;
+        trackHandler = null;
+        trackFourcc = null;
+    }
+
+    // mvhd and mdhd share a layout: version/flags, two times, timescale, duration. The timescale
+    // sits at offset 12 (version 0) or 20 (version 1).
+    private long readDuration(long bodyStart, long bodyEnd) throws IOException {
+        ByteBuffer body = read(bodyStart, 32, bodyEnd);
+        if (body.remaining() < 20) return 0;
+        int version = body.get(0) & 0xff;
+        long timescale, duration;
+        if (version == 1) {
+            if (body.remaining() < 32) return 0;
+            timescale = body.getInt(20) & 0xffffffffL;
+            duration = body.getLong(24);
+        } else {
+            timescale = body.getInt(12) & 0xffffffffL;
+            duration = body.getInt(16) & 0xffffffffL;
+        }
+        if (timescale == 0 || duration < 0 || duration == 0xffffffffL) return 0;
+        return duration * 1000 / timescale;
+    }
+
+    private void readTrackHeader(long bodyStart, long bodyEnd) throws IOException {
+        ByteBuffer body = read(bodyStart, 96, bodyEnd);
+        if (body.remaining() < 1) return;
+        // Version 1 widens the two times and the duration to 64 bits, moving the matrix back 12 bytes
+        int matrixOffset = (body.get(0) & 0xff) == 1 ? 52 : 40;
+        if (body.remaining() < matrixOffset + 44) return;
+        int[] matrix = new int[9];
+        for (int i = 0; i < 9; i++) {
+            matrix[i] = body.getInt(matrixOffset + i * 4);
+        }
+        trackMatrix = matrix;
+        trackWidth = body.getInt(matrixOffset + 36) >>> 16;
+        trackHeight = body.getInt(matrixOffset + 40) >>> 16;
+    }
+
+    private void readSampleDescription(long bodyStart, long bodyEnd) throws IOException {
+        // version/flags, entry count, then the first entry: size, type, 6 reserved, data ref index,
+        // and for visual entries 16 bytes of pre-defined/reserved followed by width and height
+        ByteBuffer body = read(bodyStart, 44, bodyEnd);
+        if (body.remaining() < 16) return;
+        trackFourcc = fourcc(body.getInt(12));
+        if (body.remaining() >= 44) {
+            entryWidth = body.getShort(40) & 0xffff;
+            entryHeight = body.getShort(42) & 0xffff;
+        }
+    }
+
+    // Reads up to length bytes at position (never past limit) into the shared buffer
+    private ByteBuffer read(long position, int length, long limit) throws IOException {
+        buffer.clear();
+        buffer.limit((int) Math.max(0, Math.min(length, limit - position)));
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) break;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static String fourcc(int type) {
+        char[] chars = {
+                (char) ((type >>> 24) & 0xff), (char) ((type >>> 16) & 0xff),
+                (char) ((type >>> 8) & 0xff), (char) (type & 0xff)};
+        return new String(chars);
+    }
+}
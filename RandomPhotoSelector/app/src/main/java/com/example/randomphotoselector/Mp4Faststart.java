@@ -0,0 +1,297 @@
+package com.example.randomphotoselector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Rewrites an MP4 whose moov box follows the media data so that moov comes first ("faststart").
+// No re-encode: moov is loaded, its stco/co64 chunk offsets are shifted by the moov size, and the
+// rest of the file is streamed across with FileChannel.transferTo. The result is written to a
+// temp file next to the original, verified, and renamed over it.
+public final class Mp4Faststart {
+
+    private static final long MAX_MOOV_SIZE = 64L * 1024 * 1024;
+    private static final int CHECKSUM_BUFFER_BYTES = 256 * 1024;
+
+    private static class Box {
+        final String type;
+        final long offset;
+        final long size;
+
+        Box(String type, long offset, long size) {
+            this.type = type;
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+
+    private Mp4Faststart() {
+    }
+
+    // Returns true if the file was rewritten, false if it was already faststart or cannot be
+    // handled (no moov, compressed moov, offsets that would overflow stco). The original is left
+    // untouched unless the rewritten copy verified.
+    public static boolean rewrite(File file) throws IOException {
+        File temp = new File(file.getParentFile(), "." + file.getName() + ".faststart.tmp");
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            FileChannel source = in.getChannel();
+            List<Box> boxes = topLevelBoxes(source);
+            int moovIndex = -1, firstMdatIndex = -1;
+            for (int i = 0; i < boxes.size(); i++) {
+                String type = boxes.get(i).type;
+                if (type.equals("moov")) {
+                    if (moovIndex >= 0) return false; // More than one moov: leave it alone
+                    moovIndex = i;
+                } else if (type.equals("mdat") && firstMdatIndex < 0) {
+                    firstMdatIndex = i;
+                }
+            }
+            if (moovIndex < 0 || firstMdatIndex < 0 || moovIndex < firstMdatIndex) return false;
+
+            Box moov = boxes.get(moovIndex);
+            if (moov.size > MAX_MOOV_SIZE) return false;
+            ByteBuffer moovData = ByteBuffer.allocate((int) moov.size);
+            readFully(source, moovData, moov.offset);
+            moovData.flip();
+
+            // Everything from the first mdat up to moov moves back by the size of moov
+            long movedStart = boxes.get(firstMdatIndex).offset;
+            long movedEnd = moov.offset;
+            if (!shiftChunkOffsets(moovData, 0, moovData.limit(), moov.size, movedStart, movedEnd)) {
+                return false;
+            }
+            moovData.rewind();
+
+            try (RandomAccessFile out = new RandomAccessFile(temp, "rw")) {
+                FileChannel target = out.getChannel();
+                target.truncate(0);
+                long position = 0;
+                for (int i = 0; i < firstMdatIndex; i++) {
+                    position += copy(source, boxes.get(i), target, position);
+                }
+                while (moovData.hasRemaining()) {
+                    position += target.write(moovData, position);
+                }
+                for (int i = firstMdatIndex; i < boxes.size(); i++) {
+                    if (i != moovIndex) position += copy(source, boxes.get(i), target, position);
+                }
+                target.force(true);
+            }
+
+            if (!verify(file, temp, source.size(), moov, movedStart)) {
+                temp.delete();
+                return false;
+            }
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+
+        // The bytes changed, so the file keeps the new mtime and mtime-based change detection
+        // (the catalog sync, backup tools) sees the rewrite
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+        return true;
+    }
+
+    private static List<Box> topLevelBoxes(FileChannel channel) throws IOException {
+        List<Box> boxes = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long end = channel.size();
+        long position = 0;
+        while (position + 8 <= end) {
+            header.clear();
+            header.limit((int) Math.min(16, end - position));
+            readFully(channel, header, position);
+            header.flip();
+            long size = header.getInt() & 0xffffffffL;
+            String type = Mp4BoxParser.fourcc(header.getInt());
+            long headerSize = 8;
+            if (size == 1) {
+                if (header.remaining() < 8) throw new IOException("Truncated box header");
+                size = header.getLong();
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) throw new IOException("Corrupt box " + type);
+            boxes.add(new Box(type, position, size));
+            position += size;
+        }
+        if (position != end) throw new IOException("Trailing bytes after last box");
+        return boxes;
+    }
+
+    // Walks the moov tree in place and adds delta to every chunk offset. Returns false if an
+    // offset points outside the moved range or a 32-bit offset would overflow.
+    private static boolean shiftChunkOffsets(ByteBuffer moov, int start, int end, long delta,
+                                             long movedStart, long movedEnd) {
+        int position = start;
+        while (position + 8 <= end) {
+            long size = moov.getInt(position) & 0xffffffffL;
+            String type = Mp4BoxParser.fourcc(moov.getInt(position + 4));
+            int headerSize = 8;
+            if (size == 1) {
+                size = moov.getLong(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) return false;
+            int bodyStart = position + headerSize;
+            int bodyEnd = (int) (position + size);
+            switch (type) {
+                case "moov": // The first call covers the whole moov box
+                case "trak":
+                case "mdia":
+                case "minf":
+                case "stbl":
+                    if (!shiftChunkOffsets(moov, bodyStart, bodyEnd, delta, movedStart, movedEnd)) return false;
+                    break;
+                case "cmov":
+                    return false; // Compressed moov
+                case "stco":
+                case "co64": {
+                    boolean wide = type.equals("co64");
+                    int count = moov.getInt(bodyStart + 4);
+                    int entrySize = wide ? 8 : 4;
+                    if (count < 0 || bodyStart + 8 + (long) count * entrySize > bodyEnd) return false;
+                    for (int i = 0; i < count; i++) {
+                        int at = bodyStart + 8 + i * entrySize;
+                        long offset = wide ? moov.getLong(at) : moov.getInt(at) & 0xffffffffL;
+                        if (offset < movedStart || offset >= movedEnd) return false;
+                        long shifted = offset + delta;
+                        if (wide) {
+                            moov.putLong(at, shifted);
+                        } else {
+                            if (shifted > 0xffffffffL) return false;
+                            moov.putInt(at, (int) shifted);
+                        }
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+            position = bodyEnd;
+        }
+        return true;
+    }
+
+    // The copy must parse as faststart with the same track metadata, every chunk offset of every
+    // track must have moved by exactly the size of moov, and everything outside moov must be the
+    // same byte sequence as in the original (compared by streamed CRC32)
+    private static boolean verify(File original, File rewritten, long originalSize, Box moov, long movedStart)
+            throws IOException {
+        if (rewritten.length() != originalSize) return false;
+        Mp4BoxParser.Mp4Info before = Mp4BoxParser.parse(original);
+        Mp4BoxParser.Mp4Info after = Mp4BoxParser.parse(rewritten);
+        if (before == null || after == null || after.moovAtEnd) return false;
+        if (before.width != after.width || before.height != after.height
+                || before.durationMs != after.durationMs
+                || (before.fourcc == null ? after.fourcc != null : !before.fourcc.equals(after.fourcc))) {
+            return false;
+        }
+        List<Long> oldOffsets = allChunkOffsets(original);
+        List<Long> newOffsets = allChunkOffsets(rewritten);
+        if (oldOffsets == null || newOffsets == null || oldOffsets.size() != newOffsets.size()) return false;
+        for (int i = 0; i < oldOffsets.size(); i++) {
+            if (newOffsets.get(i) != oldOffsets.get(i) + moov.size) return false;
+        }
+        try (RandomAccessFile a = new RandomAccessFile(original, "r");
+             RandomAccessFile b = new RandomAccessFile(rewritten, "r")) {
+            return checksumOutside(a.getChannel(), moov.offset, moov.offset + moov.size, originalSize)
+                    == checksumOutside(b.getChannel(), movedStart, movedStart + moov.size, originalSize);
+        }
+    }
+
+    // Every stco/co64 entry of every track, in file order; null if moov cannot be read
+    private static List<Long> allChunkOffsets(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            for (Box box : topLevelBoxes(channel)) {
+                if (!box.type.equals("moov") || box.size > MAX_MOOV_SIZE) continue;
+                ByteBuffer moov = ByteBuffer.allocate((int) box.size);
+                readFully(channel, moov, box.offset);
+                List<Long> offsets = new ArrayList<>();
+                return collectChunkOffsets(moov, 8, moov.limit(), offsets) ? offsets : null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean collectChunkOffsets(ByteBuffer moov, int start, int end, List<Long> offsets) {
+        int position = start;
+        while (position + 8 <= end) {
+            long size = moov.getInt(position) & 0xffffffffL;
+            String type = Mp4BoxParser.fourcc(moov.getInt(position + 4));
+            int headerSize = size == 1 ? 16 : 8;
+            if (size == 1) size = moov.getLong(position + 8);
+            if (size < headerSize || position + size > end) return false;
+            int bodyStart = position + headerSize;
+            int bodyEnd = (int) (position + size);
+            if (type.equals("trak") || type.equals("mdia") || type.equals("minf") || type.equals("stbl")) {
+                if (!collectChunkOffsets(moov, bodyStart, bodyEnd, offsets)) return false;
+            } else if (type.equals("stco") || type.equals("co64")) {
+                int count = moov.getInt(bodyStart + 4);
+                boolean wide = type.equals("co64");
+                int entrySize = wide ? 8 : 4;
+                if (count < 0 || bodyStart + 8 + (long) count * entrySize > bodyEnd) return false;
+                for (int i = 0; i < count; i++) {
+                    int at = bodyStart + 8 + i * entrySize;
+                    offsets.add(wide ? moov.getLong(at) : moov.getInt(at) & 0xffffffffL);
+                }
+            }
+            position = bodyEnd;
+        }
+        return true;
+    }
+
+    // CRC32 of the file with [skipStart, skipEnd) left out
+    private static long checksumOutside(FileChannel channel, long skipStart, long skipEnd, long size)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_BYTES);
+        update(crc, channel, buffer, 0, skipStart);
+        update(crc, channel, buffer, skipEnd, size);
+        return crc.getValue();
+    }
+
+    private static void update(CRC32 crc, FileChannel channel, ByteBuffer buffer, long from, long to)
+            throws IOException {
+        long position = from;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            readFully(channel, buffer, position);
+            buffer.flip();
+            crc.update(buffer);
+            position += buffer.limit();
+        }
+    }
+
+    private static long copy(FileChannel source, Box box, FileChannel target, long targetPosition) throws IOException {
+        long copied = 0;
+        while (copied < box.size) {
+            target.position(targetPosition + copied);
+            long n = source.transferTo(box.offset + copied, box.size - copied, target);
+            if (n <= 0) throw new IOException("Short copy of " + box.type);
+            copied += n;
+        }
+        return copied;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of file");
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.randomphotoselector;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ImageDecoder;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.Size;
+import android.view.View;
+
+import androidx.annotation.RequiresApi;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Decodes photos at the size they are shown rather than at full resolution, on a background
+// executor. The header probe supplies the dimensions and EXIF orientation, so no bounds-only pass
+// is needed. Each target view has one current request: starting a new one supersedes the old,
+// and a result is only delivered if its request is still the view's current one.
+//
+// Bitmaps handed out by load(), decode(), decodeScaled() and the prefetcher carry one BitmapPool
+// reference for the receiver, which must release() it once the bitmap is no longer shown.
+public class PhotoDecoder {
+
+    private static final String TAG = "PhotoDecoder";
+    private static final int THREAD_COUNT = 2;
+
+    public interface Callback {
+        // Called on the main thread for the view's current request only; bitmap is null on failure
+        void onPhotoDecoded(String path, Bitmap bitmap);
+    }
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final boolean lowRam;
+    private final BitmapCache bitmapCache;
+    private final BitmapPool bitmapPool;
+    // Main thread only
+    private final Map<View, Long> currentRequests = new WeakHashMap<>();
+    private final Map<View, Future<?>> pendingDecodes = new WeakHashMap<>();
+    private long nextRequestId = 0;
+
+    public PhotoDecoder(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        lowRam = activityManager != null && activityManager.isLowRamDevice();
+        bitmapCache = BitmapCache.getInstance(context);
+        bitmapPool = BitmapPool.getInstance(context);
+    }
+
+    // Decodes path to fit the view's measured size (the screen if it has not been laid out yet)
+    public void load(View target, String path, Callback callback) {
+        int width = targetWidth(target);
+        int height = targetHeight(target);
+
+        cancel(target);
+        Bitmap cached = bitmapCache.getAndRetain(path, width, height);
+        if (cached != null) {
+            callback.onPhotoDecoded(path, cached);
+            return;
+        }
+        long requestId = ++nextRequestId;
+        currentRequests.put(target, requestId);
+        Future<?> future = executor.submit(() -> {
+            long start = System.currentTimeMillis();
+            Bitmap bitmap = decode(path, width, height, true);
+            Log.d(TAG, "Decoded " + path + " in " + (System.currentTimeMillis() - start) + "ms");
+            mainHandler.post(() -> {
+                Long current = currentRequests.get(target);
+                if (current == null || current != requestId) { // Superseded while decoding
+                    bitmapPool.release(bitmap);
+                    return;
+                }
+                currentRequests.remove(target);
+                pendingDecodes.remove(target);
+                callback.onPhotoDecoded(path, bitmap);
+            });
+        });
+        pendingDecodes.put(target, future);
+    }
+
+    static int targetWidth(View target) {
+        return target.getWidth() > 0 ? target.getWidth() : target.getResources().getDisplayMetrics().widthPixels;
+    }
+
+    static int targetHeight(View target) {
+        return target.getHeight() > 0 ? target.getHeight() : target.getResources().getDisplayMetrics().heightPixels;
+    }
+
+    public void cancel(View target) {
+        currentRequests.remove(target);
+        Future<?> pending = pendingDecodes.remove(target);
+        if (pending != null) pending.cancel(false);
+    }
+
+    // Gives back the reference that came with a bitmap from any of the decode paths
+    public void release(Bitmap bitmap) {
+        bitmapPool.release(bitmap);
+    }
+
+    public String getPoolStats() {
+        return bitmapPool.getStats();
+    }
+
+    public void shutdown() {
+        currentRequests.clear();
+        pendingDecodes.clear();
+        executor.shutdownNow();
+    }
+
+    // Blocking decode through the shared BitmapCache. Formats BitmapFactory reads are decoded into
+    // pooled bitmaps (inBitmap), so a steady slideshow allocates next to nothing. Anything else
+    // goes through ImageDecoder on API 28+, where displayOnly allows HARDWARE bitmaps.
+    public Bitmap decode(String path, int reqWidth, int reqHeight, boolean displayOnly) {
+        Bitmap bitmap = bitmapCache.getAndRetain(path, reqWidth, reqHeight);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        bitmap = decodeUncached(path, reqWidth, reqHeight, displayOnly, false);
+        bitmapCache.put(path, reqWidth, reqHeight, bitmap);
+        return bitmap;
+    }
+
+    // Like decode(), but scaled in the decoder to just cover the size rather than stopping at the
+    // power-of-two sample above it: up to 4x fewer pixels per frame for burst mode, at the cost
+    // of a scaling pass. Burst frames are shown once, so they bypass the BitmapCache rather than
+    // evicting the slideshow's and the list's entries; the caller's pool reference is all they hold.
+    public Bitmap decodeScaled(String path, int reqWidth, int reqHeight) {
+        return decodeUncached(path, reqWidth, reqHeight, true, true);
+    }
+
+    private Bitmap decodeUncached(String path, int reqWidth, int reqHeight, boolean displayOnly, boolean exact) {
+        try {
+            ImageHeaderProbe.ImageInfo info = ImageHeaderProbe.get(path);
+            if (info != null) {
+                return decodePooled(path, info, reqWidth, reqHeight, exact);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                return decodeWithImageDecoder(path, reqWidth, reqHeight, displayOnly, lowRam);
+            } else {
+                return decodeWithBitmapFactory(path, reqWidth, reqHeight, displayOnly, lowRam);
+            }
+        } catch (Exception | OutOfMemoryError e) {
+            Log.e(TAG, "Failed to decode " + path + ": " + e);
+            return null;
+        }
+    }
+
+    private Bitmap decodePooled(String path, ImageHeaderProbe.ImageInfo info, int reqWidth, int reqHeight,
+                                boolean exact) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        int sampleWidth = info.isTransposed() ? reqHeight : reqWidth;
+        int sampleHeight = info.isTransposed() ? reqWidth : reqHeight;
+        options.inSampleSize = ImageHeaderProbe.calculateInSampleSize(info.width, info.height,
+                sampleWidth, sampleHeight);
+        options.inMutable = true;
+        options.inPreferredConfig = lowRam && "jpeg".equals(info.format)
+                ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        // Decoders round the subsampled size differently; size the target for rounding up
+        int outWidth = (info.width + options.inSampleSize - 1) / options.inSampleSize;
+        int outHeight = (info.height + options.inSampleSize - 1) / options.inSampleSize;
+        if (exact) {
+            float scale = coverScale(outWidth, outHeight, sampleWidth, sampleHeight);
+            if (scale < 1f) {
+                // BitmapFactory scales by inTargetDensity / inDensity while decoding
+                options.inScaled = true;
+                options.inDensity = outWidth;
+                options.inTargetDensity = Math.max(1, Math.round(outWidth * scale));
+                outHeight = (int) Math.ceil((double) outHeight * options.inTargetDensity / options.inDensity);
+                outWidth = options.inTargetDensity;
+            }
+        }
+        int bytesPerPixel = options.inPreferredConfig == Bitmap.Config.RGB_565 ? 2 : 4;
+        Bitmap target = bitmapPool.get(outWidth * outHeight * bytesPerPixel);
+        options.inBitmap = target;
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap did not fit after all; decode into a fresh one
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeFile(path, options);
+        }
+        if (bitmap != target) {
+            bitmapPool.release(target);
+            bitmapPool.track(bitmap);
+        }
+        if (bitmap == null || info.orientation == ImageHeaderProbe.ORIENTATION_NORMAL) return bitmap;
+
+        Bitmap rotated = rotateInto(bitmap, info);
+        if (rotated != bitmap) bitmapPool.release(bitmap);
+        return rotated;
+    }
+
+    // Like applyOrientation(), but draws into a pooled bitmap instead of allocating one
+    private Bitmap rotateInto(Bitmap source, ImageHeaderProbe.ImageInfo info) {
+        int width = info.isTransposed() ? source.getHeight() : source.getWidth();
+        int height = info.isTransposed() ? source.getWidth() : source.getHeight();
+        Bitmap.Config config = source.getConfig() != null ? source.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap target = bitmapPool.get(source.getAllocationByteCount());
+        try {
+            if (target != null) {
+                target.reconfigure(width, height, config);
+            } else {
+                target = Bitmap.createBitmap(width, height, config);
+                bitmapPool.track(target);
+            }
+        } catch (IllegalArgumentException | OutOfMemoryError e) {
+            bitmapPool.release(target);
+            Log.e(TAG, "Could not rotate photo, showing it unrotated: " + e);
+            return source;
+        }
+        Matrix matrix = new Matrix();
+        matrix.postRotate(info.rotationDegrees());
+        if (info.isMirrored()) matrix.postScale(-1, 1);
+        // Move the rotated image back into the positive quadrant
+        RectF bounds = new RectF(0, 0, source.getWidth(), source.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+        target.eraseColor(Color.TRANSPARENT);
+        new Canvas(target).drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return target;
+    }
+
+    // ImageDecoder applies EXIF orientation itself and can scale to any size, not just powers of two.
+    // It is also the only decoder for HEIF and AVIF.
+    @RequiresApi(Build.VERSION_CODES.P)
+    private static Bitmap decodeWithImageDecoder(String path, int reqWidth, int reqHeight, boolean displayOnly,
+                                                 boolean lowRam) throws IOException {
+        ImageHeaderProbe.ImageInfo probed = ImageHeaderProbe.get(path);
+        ImageDecoder.Source source = ImageDecoder.createSource(new File(path));
+        return ImageDecoder.decodeBitmap(source, (decoder, info, src) -> {
+            Size size = info.getSize();
+            int displayWidth = probed != null ? probed.displayWidth() : size.getWidth();
+            int displayHeight = probed != null ? probed.displayHeight() : size.getHeight();
+            float scale = coverScale(displayWidth, displayHeight, reqWidth, reqHeight);
+            if (scale < 1f) {
+                decoder.setTargetSize(Math.max(1, Math.round(size.getWidth() * scale)),
+                        Math.max(1, Math.round(size.getHeight() * scale)));
+            }
+            decoder.setAllocator(displayOnly ? ImageDecoder.ALLOCATOR_DEFAULT : ImageDecoder.ALLOCATOR_SOFTWARE);
+            if (lowRam) decoder.setMemorySizePolicy(ImageDecoder.MEMORY_POLICY_LOW_RAM); // RGB_565 for opaque images
+        });
+    }
+
+    // Decodes at the smallest power-of-two subsampling that still covers reqWidth x reqHeight
+    // (in display orientation; 0 means unconstrained) and rotates the result upright.
+    public static Bitmap decodeSampled(String path, int reqWidth, int reqHeight) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && ImageHeaderProbe.get(path) == null) {
+            // Not a format the probe knows (HEIF, AVIF, ...); BitmapFactory may not read it either
+            try {
+                return decodeWithImageDecoder(path, reqWidth, reqHeight, false, false);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to decode " + path + ": " + e);
+                return null;
+            }
+        }
+        return decodeWithBitmapFactory(path, reqWidth, reqHeight, false, false);
+    }
+
+    private static Bitmap decodeWithBitmapFactory(String path, int reqWidth, int reqHeight,
+                                                  boolean displayOnly, boolean lowRam) {
+        ImageHeaderProbe.ImageInfo info = ImageHeaderProbe.get(path);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if (info != null) {
+            // Requested size is in display orientation; the decoder works on the stored axes
+            int sampleWidth = info.isTransposed() ? reqHeight : reqWidth;
+            int sampleHeight = info.isTransposed() ? reqWidth : reqHeight;
+            options.inSampleSize = ImageHeaderProbe.calculateInSampleSize(info.width, info.height,
+                    sampleWidth, sampleHeight);
+            boolean needsRotation = info.orientation != ImageHeaderProbe.ORIENTATION_NORMAL;
+            if (displayOnly && !needsRotation && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                options.inPreferredConfig = Bitmap.Config.HARDWARE;
+            } else if (lowRam && "jpeg".equals(info.format)) {
+                options.inPreferredConfig = Bitmap.Config.RGB_565; // JPEG has no alpha to lose
+            }
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+        if (bitmap == null || info == null) return bitmap;
+        return applyOrientation(bitmap, info);
+    }
+
+    // Scale that makes width x height just cover reqWidth x reqHeight, never above 1
+    private static float coverScale(int width, int height, int reqWidth, int reqHeight) {
+        if (width <= 0 || height <= 0) return 1f;
+        float scaleX = reqWidth > 0 ? (float) reqWidth / width : 0f;
+        float scaleY = reqHeight > 0 ? (float) reqHeight / height : 0f;
+        float scale = Math.max(scaleX, scaleY);
+        return scale <= 0f ? 1f : Math.min(1f, scale);
+    }
+
+    static Bitmap applyOrientation(Bitmap bitmap, ImageHeaderProbe.ImageInfo info) {
+        if (info.orientation == ImageHeaderProbe.ORIENTATION_NORMAL) return bitmap;
+        Matrix matrix = new Matrix();
+        matrix.postRotate(info.rotationDegrees());
+        if (info.isMirrored()) matrix.postScale(-1, 1);
+        try {
+            Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+            if (rotated != bitmap) bitmap.recycle();
+            return rotated;
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "Not enough memory to rotate photo, showing it unrotated");
+            return bitmap;
+        }
+    }
+}
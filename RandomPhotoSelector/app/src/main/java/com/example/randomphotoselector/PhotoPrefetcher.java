@@ -0,0 +1,148 @@
+package com.example.randomphotoselector;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Decode-ahead ring for the slideshow: keeps the next few photos decoded so a tick is only a
+// bitmap swap. The depth follows the measured decode latency (EWMA) against the slideshow
+// interval, so slow photos or short intervals prefetch further ahead. The ring holds a pool
+// reference to each ready bitmap until it is taken or dropped. All public methods are
+// main-thread only.
+public class PhotoPrefetcher {
+
+    private static final int THREAD_COUNT = 2;
+    private static final int MIN_DEPTH = 1;
+    private static final int MAX_DEPTH = 4;
+    private static final double EWMA_ALPHA = 0.3;
+
+    public interface PathSource {
+        // Path offset places after the current one, or null past the end
+        String peek(int offset);
+    }
+
+    private final PhotoDecoder decoder;
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Bitmap> ready = new HashMap<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private final Set<String> window = new LinkedHashSet<>();
+    private long intervalMs = 5000;
+    private double decodeMsEwma = 200; // Until measured, assume a large photo
+    private int hits = 0;
+    private int misses = 0;
+
+    public PhotoPrefetcher(PhotoDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    public void setInterval(long intervalMs) {
+        this.intervalMs = Math.max(1, intervalMs);
+    }
+
+    // Photos whose decode overlaps with the interval; one extra absorbs latency spikes
+    public int getDepth() {
+        int depth = (int) Math.ceil(decodeMsEwma / intervalMs) + 1;
+        return Math.max(MIN_DEPTH, Math.min(MAX_DEPTH, depth));
+    }
+
+    // Returns the prefetched bitmap for path, or null (a miss) if it is not decoded yet. The
+    // caller takes over the ring's reference and releases it through PhotoDecoder.release().
+    public Bitmap take(String path) {
+        Bitmap bitmap = ready.remove(path);
+        if (bitmap != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return bitmap;
+    }
+
+    // Makes sure the next getDepth() photos are decoded or decoding at target's size, and drops
+    // anything else
+    public void refill(PathSource source, View target) {
+        int width = PhotoDecoder.targetWidth(target);
+        int height = PhotoDecoder.targetHeight(target);
+        window.clear();
+        int depth = getDepth();
+        for (int offset = 1; offset <= depth; offset++) {
+            String path = source.peek(offset);
+            if (path == null) break;
+            window.add(path);
+        }
+        Iterator<Map.Entry<String, Bitmap>> iterator = ready.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Bitmap> entry = iterator.next();
+            if (!window.contains(entry.getKey())) {
+                decoder.release(entry.getValue());
+                iterator.remove();
+            }
+        }
+
+        for (String path : window) {
+            if (ready.containsKey(path) || !inFlight.add(path)) continue;
+            executor.execute(() -> {
+                long start = System.currentTimeMillis();
+                Bitmap bitmap = decoder.decode(path, width, height, true);
+                long elapsed = System.currentTimeMillis() - start;
+                mainHandler.post(() -> onDecoded(path, bitmap, elapsed));
+            });
+        }
+    }
+
+    private void onDecoded(String path, Bitmap bitmap, long elapsedMs) {
+        inFlight.remove(path);
+        decodeMsEwma += EWMA_ALPHA * (elapsedMs - decodeMsEwma);
+        if (bitmap == null) return;
+        if (window.contains(path) && !ready.containsKey(path)) {
+            ready.put(path, bitmap);
+        } else {
+            decoder.release(bitmap);
+        }
+    }
+
+    public void clear() {
+        window.clear();
+        for (Bitmap bitmap : ready.values()) {
+            decoder.release(bitmap);
+        }
+        ready.clear();
+    }
+
+    public void shutdown() {
+        clear();
+        executor.shutdownNow();
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    public long getAverageDecodeMs() {
+        return Math.round(decodeMsEwma);
+    }
+
+    public String getStats() {
+        return "Prefetch hits " + hits + ", misses " + misses + ", depth " + getDepth()
+                + ", decode ~" + getAverageDecodeMs() + "ms";
+    }
+
+    public void resetStats() {
+        hits = 0;
+        misses = 0;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.randomphotoselector;
+
+import android.graphics.Bitmap;
+import android.view.View;
+import android.view.animation.LinearInterpolator;
+import android.widget.ImageView;
+
+// Slideshow transitions between two stacked ImageViews: the outgoing photo moves to the view on
+// top and fades out over the incoming one, which optionally drifts (Ken Burns). Both bitmaps are
+// already decoded and screen-sized, and only view properties animate, each on a hardware layer,
+// so a frame is a GPU composite with no decode or allocation.
+public class PhotoTransition {
+
+    public static final int STYLE_CUT = 0;
+    public static final int STYLE_CROSSFADE = 1;
+    public static final int STYLE_KEN_BURNS = 2;
+    public static final String KEY_STYLE = "photo_transition"; // In AppSettings
+
+    private static final long MAX_FADE_MS = 600;
+    private static final float KEN_BURNS_ZOOM = 1.08f;
+    private static final float KEN_BURNS_PAN = 0.03f; // Fraction of the view width
+
+    private final PhotoDecoder decoder;
+    private final ImageView front; // Current photo
+    private final ImageView back;  // Outgoing photo, stacked above front while it fades
+    private final LinearInterpolator linear = new LinearInterpolator();
+    private Bitmap fadingBitmap; // Pool reference held until the fade ends
+    private int count = 0;
+
+    public PhotoTransition(PhotoDecoder decoder, ImageView front, ImageView back) {
+        this.decoder = decoder;
+        this.front = front;
+        this.back = back;
+    }
+
+    public static String styleName(int style) {
+        switch (style) {
+            case STYLE_CROSSFADE: return "Crossfade";
+            case STYLE_KEN_BURNS: return "Ken Burns";
+            default: return "Cut";
+        }
+    }
+
+    // Shows incoming on the front view and takes over the pool references of both bitmaps;
+    // outgoing (may be null) is released once it is no longer drawn
+    public void show(Bitmap incoming, Bitmap outgoing, ImageView.ScaleType scaleType, int style, long intervalMs) {
+        // Stop the animators where they are; the drift reached so far is copied below
+        back.animate().cancel();
+        front.animate().cancel();
+        endFade();
+        if (style == STYLE_CUT || outgoing == null) {
+            resetTransform(front);
+            front.setScaleType(scaleType);
+            front.setImageBitmap(incoming);
+            if (outgoing != null) decoder.release(outgoing);
+            return;
+        }
+
+        // The outgoing photo keeps its place, drift included, while it fades
+        back.setScaleType(front.getScaleType());
+        back.setImageBitmap(outgoing);
+        back.setScaleX(front.getScaleX());
+        back.setScaleY(front.getScaleY());
+        back.setTranslationX(front.getTranslationX());
+        back.setTranslationY(front.getTranslationY());
+        back.setAlpha(1f);
+        back.setVisibility(View.VISIBLE);
+        fadingBitmap = outgoing;
+
+        front.setScaleType(scaleType);
+        front.setImageBitmap(incoming);
+        resetTransform(front);
+
+        long fadeMs = Math.min(MAX_FADE_MS, intervalMs / 3);
+        back.animate().alpha(0f).setDuration(fadeMs).withLayer().withEndAction(this::endFade);
+        if (style == STYLE_KEN_BURNS) {
+            // Alternate the pan direction so consecutive photos don't all slide the same way
+            float pan = front.getWidth() * KEN_BURNS_PAN * (count++ % 2 == 0 ? 1 : -1);
+            front.animate().scaleX(KEN_BURNS_ZOOM).scaleY(KEN_BURNS_ZOOM).translationX(pan)
+                    .setDuration(intervalMs + fadeMs).setInterpolator(linear).withLayer();
+        }
+    }
+
+    // Ends any running transition immediately and leaves only the front photo, untransformed
+    public void cancel() {
+        back.animate().cancel();
+        front.animate().cancel();
+        resetTransform(front);
+        endFade();
+    }
+
+    private void endFade() {
+        back.setVisibility(View.GONE);
+        back.setImageDrawable(null);
+        if (fadingBitmap != null) {
+            decoder.release(fadingBitmap);
+            fadingBitmap = null;
+        }
+    }
+
+    private static void resetTransform(View view) {
+        view.setScaleX(1f);
+        view.setScaleY(1f);
+        view.setTranslationX(0f);
+        view.setTranslationY(0f);
+    }
+}
@@ -0,0 +1,405 @@
+package com.example.randomphotoselector;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.ui.PlayerView;
+
+import java.util.Locale;
+
+// Owns the ExoPlayer and everything that used to be repeated in each play path: the single
+// listener, the rolling playlist fed from a Source, sizing the player view and playback speed.
+// Each user action goes through begin(), which counts the prepares it causes; a skip should cost
+// at most one, and anything more is logged as a warning.
+//
+// Buffering follows one of the PROFILE_* LoadControl profiles. ExoPlayer's defaults are sized for
+// network streams; local files can start on a few hundred ms of buffer. The time from prepare()
+// to the first rendered frame is averaged per profile in prefs, so profiles can be compared on
+// the device itself.
+public class PlaybackController {
+
+    private static final String TAG = "PlaybackController";
+    private static final int QUEUE_AHEAD = 2; // Videos kept in the playlist after the current one
+
+    public static final int PROFILE_DEFAULT = 0;
+    public static final int PROFILE_INSTANT = 1;    // Start on a tiny buffer; local reads rarely stall
+    public static final int PROFILE_HIGH_SPEED = 2; // Deep buffer for 3-5x, which drains it that much faster
+    public static final int PROFILE_LOW_MEMORY = 3;
+    public static final int PROFILE_COUNT = 4;
+    public static final String KEY_PROFILE = "load_profile"; // In AppSettings
+    private static final String KEY_TTFF_AVG = "ttff_avg_";
+    private static final String KEY_TTFF_COUNT = "ttff_count_";
+    private static final int TTFF_MAX_WEIGHT = 20; // Running average over roughly the last 20 starts
+
+    public interface Source {
+        // Advances past the returned path; null when there is nothing to play
+        String next();
+
+        // What next() would return offset - 1 calls from now, without advancing; null if unknown
+        String peek(int offset);
+    }
+
+    public interface Callback {
+        // The player view is about to show; hide whatever covers it
+        void onVideoShown();
+
+        // A new video became current; auto when the previous one played to its end
+        void onVideoStarted(String path, boolean auto);
+
+        // Nothing was queued after the last video
+        void onPlaylistEnded();
+    }
+
+    private final Context context;
+    private final PlayerView playerView;
+    private final VideoMetadataCache metadataCache;
+    private final Source source;
+    private final Callback callback;
+    private final SharedPreferences prefs;
+    private final Player.Listener listener;
+    private ExoPlayer player;
+    private int profile;
+    private String currentPath;
+    private float speed = 1f;
+    private float volume = 1f;
+    private int videoWidth, videoHeight; // Display size of the current video, as last laid out
+    private long prepareStartMs = 0; // Non-zero until the first frame after a prepare
+
+    private String action; // User action in progress, null before the first
+    private int actionPrepares = 0;
+    private int actions = 0;
+    private int totalPrepares = 0;
+    private int maxPrepares = 0;
+
+    public PlaybackController(Context context, PlayerView playerView, VideoMetadataCache metadataCache,
+                              Source source, Callback callback) {
+        this.context = context;
+        this.playerView = playerView;
+        this.metadataCache = metadataCache;
+        this.source = source;
+        this.callback = callback;
+        prefs = AppSettings.get(context);
+        profile = prefs.getInt(KEY_PROFILE, PROFILE_INSTANT);
+        // The one listener; play paths only change the playlist
+        listener = new Player.Listener() {
+            @Override
+            public void onMediaItemTransition(MediaItem mediaItem, int reason) {
+                onTransition(mediaItem, reason);
+            }
+
+            @Override
+            public void onPlaybackStateChanged(int state) {
+                if (state == Player.STATE_ENDED) callback.onPlaylistEnded();
+            }
+
+            @Override
+            public void onRenderedFirstFrame() {
+                recordFirstFrame();
+            }
+        };
+        buildPlayer();
+    }
+
+    private void buildPlayer() {
+        player = new ExoPlayer.Builder(context).setLoadControl(loadControl(profile)).build();
+        player.addListener(listener);
+        player.setPlaybackParameters(new PlaybackParameters(speed));
+        player.setVolume(volume);
+        playerView.setPlayer(player);
+    }
+
+    private static LoadControl loadControl(int profile) {
+        DefaultLoadControl.Builder builder = new DefaultLoadControl.Builder();
+        switch (profile) {
+            case PROFILE_INSTANT:
+                builder.setBufferDurationsMs(2_000, 15_000, 100, 500);
+                break;
+            case PROFILE_HIGH_SPEED:
+                builder.setBufferDurationsMs(30_000, 120_000, 1_000, 2_000)
+                        .setTargetBufferBytes(64 * 1024 * 1024)
+                        .setPrioritizeTimeOverSizeThresholds(true);
+                break;
+            case PROFILE_LOW_MEMORY:
+                builder.setBufferDurationsMs(5_000, 15_000, 500, 1_000)
+                        .setTargetBufferBytes(8 * 1024 * 1024)
+                        .setPrioritizeTimeOverSizeThresholds(false);
+                break;
+            default:
+                break; // ExoPlayer's stream-tuned defaults
+        }
+        return builder.build();
+    }
+
+    public static String profileName(int profile) {
+        switch (profile) {
+            case PROFILE_INSTANT: return "Instant start";
+            case PROFILE_HIGH_SPEED: return "Smooth high-speed";
+            case PROFILE_LOW_MEMORY: return "Low memory";
+            default: return "Default";
+        }
+    }
+
+    public int getLoadProfile() {
+        return profile;
+    }
+
+    // A LoadControl is fixed at build time, so the player is rebuilt and the current video picks
+    // up where it was
+    public void setLoadProfile(int newProfile) {
+        if (newProfile == profile) return;
+        profile = newProfile;
+        prefs.edit().putInt(KEY_PROFILE, profile).apply();
+        long position = player.getCurrentPosition();
+        boolean playing = player.getPlaybackState() != Player.STATE_IDLE;
+        boolean playWhenReady = player.getPlayWhenReady();
+        playerView.setPlayer(null);
+        player.removeListener(listener);
+        player.release();
+        buildPlayer();
+        if (!playing || currentPath == null) return;
+        begin("profile");
+        player.setMediaItem(item(currentPath), position);
+        prepare();
+        player.setPlayWhenReady(playWhenReady);
+        queueAhead();
+    }
+
+    // "Instant start: 140ms avg over 12 starts"
+    public String describeProfile(int profile) {
+        int count = prefs.getInt(KEY_TTFF_COUNT + profile, 0);
+        if (count == 0) return profileName(profile) + ": not measured yet";
+        return String.format(Locale.US, "%s: %.0fms avg over %d starts", profileName(profile),
+                prefs.getFloat(KEY_TTFF_AVG + profile, 0f), count);
+    }
+
+    private void recordFirstFrame() {
+        if (prepareStartMs == 0) return; // A seek or surface change, not a start
+        long ttffMs = SystemClock.elapsedRealtime() - prepareStartMs;
+        prepareStartMs = 0;
+        int count = prefs.getInt(KEY_TTFF_COUNT + profile, 0);
+        float average = prefs.getFloat(KEY_TTFF_AVG + profile, 0f);
+        int weight = Math.min(count, TTFF_MAX_WEIGHT - 1);
+        average = (average * weight + ttffMs) / (weight + 1);
+        prefs.edit()
+                .putInt(KEY_TTFF_COUNT + profile, count + 1)
+                .putFloat(KEY_TTFF_AVG + profile, average)
+                .apply();
+        Log.d(TAG, "First frame after " + ttffMs + "ms with " + profileName(profile));
+    }
+
+    // Plays path at the head of a new playlist, with the source's next videos queued behind it
+    public void play(String path, String actionName) {
+        begin(actionName);
+        start(path);
+    }
+
+    // Moves to the already buffered next video if it is still what the source would play next
+    public boolean skipToNext(String actionName) {
+        if (player.getPlaybackState() == Player.STATE_IDLE || !player.hasNextMediaItem()) return false;
+        String queued = player.getMediaItemAt(player.getCurrentMediaItemIndex() + 1).mediaId;
+        if (!queued.equals(source.peek(1))) return false;
+        begin(actionName);
+        player.seekToNextMediaItem();
+        return true;
+    }
+
+    // Re-sizes the player view for a new screen shape, e.g. after rotation. Only the layout
+    // changes; the player keeps its decoders, buffer and position.
+    public void relayout() {
+        if (videoWidth > 0 && videoHeight > 0) {
+            applyLayout(videoWidth, videoHeight);
+        } else if (currentPath != null) {
+            layout(currentPath); // Still waiting on the metadata; this re-asks the cache
+        }
+    }
+
+    private void start(String path) {
+        currentPath = path;
+        callback.onVideoShown();
+        layout(path);
+        player.setMediaItem(item(path));
+        prepare();
+        player.setPlayWhenReady(true);
+        queueAhead();
+        callback.onVideoStarted(path, false);
+    }
+
+    private void prepare() {
+        prepareStartMs = SystemClock.elapsedRealtime();
+        player.prepare();
+        actionPrepares++;
+        totalPrepares++;
+    }
+
+    private static MediaItem item(String path) {
+        return new MediaItem.Builder().setUri(Uri.parse(path)).setMediaId(path).build();
+    }
+
+    // Keeps QUEUE_AHEAD videos queued behind the current one so ExoPlayer buffers them and moves
+    // on without tearing down its renderers. They are only peeked; the source advances when one
+    // actually starts.
+    private void queueAhead() {
+        int queued = player.getMediaItemCount() - player.getCurrentMediaItemIndex() - 1;
+        for (int offset = queued + 1; offset <= QUEUE_AHEAD; offset++) {
+            String path = source.peek(offset);
+            if (path == null) break; // A new round starts from onPlaylistEnded
+            player.addMediaItem(item(path));
+        }
+    }
+
+    private void onTransition(MediaItem mediaItem, int reason) {
+        if (mediaItem == null || reason == Player.MEDIA_ITEM_TRANSITION_REASON_PLAYLIST_CHANGED
+                || reason == Player.MEDIA_ITEM_TRANSITION_REASON_REPEAT) return;
+        boolean auto = reason == Player.MEDIA_ITEM_TRANSITION_REASON_AUTO;
+        if (auto) begin("auto"); // A seek belongs to the skip that caused it
+        String path = mediaItem.mediaId;
+        String expected = source.next();
+        if (expected != null && !expected.equals(path)) {
+            // Queued before a folder or mode switch; play what the source says instead
+            start(expected);
+            return;
+        }
+        currentPath = path;
+        layout(path);
+        // Played items stay in the source's history; the playlist only needs what is ahead
+        int index = player.getCurrentMediaItemIndex();
+        if (index > 0) player.removeMediaItems(0, index);
+        queueAhead();
+        callback.onVideoStarted(path, auto);
+    }
+
+    // Sizes playerView from the metadata cache. On a miss the video starts with the current layout
+    // and is re-laid out once the background extraction reports back.
+    private void layout(String path) {
+        videoWidth = 0;
+        videoHeight = 0;
+        VideoMetadataCache.VideoMetadata metadata = metadataCache.get(path);
+        if (metadata != null) {
+            applyLayout(metadata.displayWidth(), metadata.displayHeight());
+            return;
+        }
+        metadataCache.request(path, (requestedPath, loaded) -> {
+            if (loaded != null && requestedPath.equals(currentPath)) {
+                applyLayout(loaded.displayWidth(), loaded.displayHeight());
+            }
+        });
+    }
+
+    private void applyLayout(int videoWidth, int videoHeight) {
+        if (videoWidth <= 0 || videoHeight <= 0) return;
+        this.videoWidth = videoWidth;
+        this.videoHeight = videoHeight;
+
+        int screenWidth = context.getResources().getDisplayMetrics().widthPixels;
+        int screenHeight = context.getResources().getDisplayMetrics().heightPixels;
+
+        ViewGroup.LayoutParams params = playerView.getLayoutParams();
+
+        if (context.getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE) {
+            // In landscape, fit to screen height
+            params.height = screenHeight;
+            params.width = (int) ((float) screenHeight * videoWidth / videoHeight);
+        } else {
+            // In portrait, fit to screen width
+            params.width = screenWidth;
+            params.height = (int) ((float) screenWidth * videoHeight / videoWidth);
+        }
+
+        playerView.setLayoutParams(params);
+
+        // Center vertically/horizontally in FrameLayout
+        if (playerView.getParent() instanceof FrameLayout) {
+            FrameLayout.LayoutParams flParams = (FrameLayout.LayoutParams) playerView.getLayoutParams();
+            flParams.gravity = Gravity.CENTER;
+            playerView.setLayoutParams(flParams);
+        }
+    }
+
+    public void setSpeed(float speed) {
+        this.speed = speed;
+        player.setPlaybackParameters(new PlaybackParameters(speed));
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    public void setVolume(float volume) {
+        this.volume = volume;
+        player.setVolume(volume);
+    }
+
+    public boolean isPlaying() {
+        return player.isPlaying();
+    }
+
+    public long getCurrentPosition() {
+        return player.getCurrentPosition();
+    }
+
+    public long getDuration() {
+        return player.getDuration();
+    }
+
+    public void seekTo(long positionMs) {
+        player.seekTo(positionMs);
+    }
+
+    public void pause() {
+        player.setPlayWhenReady(false);
+    }
+
+    public void stop() {
+        prepareStartMs = 0;
+        player.setPlayWhenReady(false);
+        player.stop();
+    }
+
+    public void release() {
+        endAction();
+        playerView.setPlayer(null);
+        player.release();
+        Log.d(TAG, getStats());
+    }
+
+    public String getCurrentPath() {
+        return currentPath;
+    }
+
+    // "12 actions, 14 prepares, at most 2 per action, last (next) 1"
+    public String getStats() {
+        return actions + " actions, " + totalPrepares + " prepares, at most " + maxPrepares + " per action"
+                + (action != null ? ", last (" + action + ") " + actionPrepares : "");
+    }
+
+    private void begin(String actionName) {
+        endAction();
+        action = actionName;
+        actionPrepares = 0;
+        actions++;
+    }
+
+    private void endAction() {
+        if (action == null) return;
+        if (actionPrepares > 1) {
+            Log.w(TAG, action + " took " + actionPrepares + " prepares");
+        } else {
+            Log.d(TAG, action + " took " + actionPrepares + " prepares");
+        }
+        maxPrepares = Math.max(maxPrepares, actionPrepares);
+        action = null;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.randomphotoselector;
 
+import android.os.Build;
+
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
@@ -7,12 +9,29 @@ import java.util.Random;
 
 public class RandomPhotoSelector {
     private final String directoryPath;
+    private final MediaCatalog catalog;
+    private final WeightedSelector weightedSelector;
+    private final Random random = new Random();
 
     public RandomPhotoSelector(String directoryPath) {
+        this(directoryPath, null);
+    }
+
+    public RandomPhotoSelector(String directoryPath, MediaCatalog catalog) {
+        this(directoryPath, catalog, null);
+    }
+
+    public RandomPhotoSelector(String directoryPath, MediaCatalog catalog, FolderWeights weights) {
         this.directoryPath = directoryPath;
+        this.catalog = catalog;
+        this.weightedSelector = catalog != null && weights != null
+                ? new WeightedSelector(catalog, directoryPath, MediaCatalog.TYPE_PHOTO, weights) : null;
     }
 
     public List<String> getImagePaths() {
+        if (catalog != null) {
+            return catalog.getPaths(directoryPath, MediaCatalog.TYPE_PHOTO);
+        }
         List<String> imagePaths = new ArrayList<>();
         File directory = new File(directoryPath);
         if (directory.exists() && directory.isDirectory()) {
@@ -29,21 +48,38 @@ public class RandomPhotoSelector {
     }
 
     public String getRandomImagePath() {
-        List<String> imagePaths = getImagePaths();
-        if (!imagePaths.isEmpty()) {
-            Random random = new Random();
-            return imagePaths.get(random.nextInt(imagePaths.size()));
+        if (weightedSelector != null) {
+            return weightedSelector.next(random);
         }
-        return null;
+        if (catalog != null) {
+            return catalog.getRandomPath(directoryPath, MediaCatalog.TYPE_PHOTO, random);
+        }
+        List<String> picked = sampleImagePaths(1);
+        return picked.isEmpty() ? null : picked.get(0);
+    }
+
+    // Uniformly picks up to k photos straight from the directory in one pass, holding only k paths
+    public List<String> sampleImagePaths(int k) {
+        return ReservoirSampler.sampleDirectory(directoryPath, k, RandomPhotoSelector::isImageFile, random);
     }
 
-    private boolean isImageFile(File file) {
-        String[] imageExtensions = {".jpg", ".jpeg", ".png", ".gif", ".bmp"};
+    static boolean isImageFile(File file) {
+        return isImageFile(file.getName());
+    }
+
+    static boolean isImageFile(String fileName) {
+        String[] imageExtensions = {".jpg", ".jpeg", ".png", ".gif", ".bmp", ".webp"};
+        String lowerName = fileName.toLowerCase();
         for (String extension : imageExtensions) {
-            if (file.getName().toLowerCase().endsWith(extension)) {
+            if (lowerName.endsWith(extension)) {
                 return true;
             }
         }
-        return false;
+        // Only listed where the platform decoders can read them
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                && (lowerName.endsWith(".heic") || lowerName.endsWith(".heif"))) {
+            return true;
+        }
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && lowerName.endsWith(".avif");
     }
 }
\ No newline at end of file
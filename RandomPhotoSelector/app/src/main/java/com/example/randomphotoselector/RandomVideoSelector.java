@@ -12,15 +12,33 @@ public class RandomVideoSelector {
     private final String directoryPath;
     private final List<String> videoPaths;
     private final Random random;
+    private final MediaCatalog catalog;
+    private final WeightedSelector weightedSelector;
+    private boolean isLoaded = false;
 
     public RandomVideoSelector(String directoryPath) {
+        this(directoryPath, null);
+    }
+
+    public RandomVideoSelector(String directoryPath, MediaCatalog catalog) {
+        this(directoryPath, catalog, null);
+    }
+
+    public RandomVideoSelector(String directoryPath, MediaCatalog catalog, FolderWeights weights) {
         this.directoryPath = directoryPath;
         this.videoPaths = new ArrayList<>();
         this.random = new Random();
-        loadVideoPaths();
+        this.catalog = catalog;
+        this.weightedSelector = catalog != null && weights != null
+                ? new WeightedSelector(catalog, directoryPath, MediaCatalog.TYPE_VIDEO, weights) : null;
     }
 
     private void loadVideoPaths() {
+        if (catalog != null) {
+            videoPaths.addAll(catalog.getPaths(directoryPath, MediaCatalog.TYPE_VIDEO));
+            Log.d("RandomVideoSelector", "Loaded " + videoPaths.size() + " videos from catalog");
+            return;
+        }
         File directory = new File(directoryPath);
         if (directory.exists() && directory.isDirectory()) {
             File[] files = directory.listFiles();
@@ -37,10 +55,14 @@ public class RandomVideoSelector {
         }
     }
 
-    private boolean isVideoFile(File file) {
+    static boolean isVideoFile(File file) {
+        return isVideoFile(file.getName());
+    }
+
+    static boolean isVideoFile(String fileName) {
         String[] videoExtensions = {".mp4", ".mkv", ".avi", ".mov", ".wmv"};
         for (String extension : videoExtensions) {
-            if (file.getName().toLowerCase().endsWith(extension)) {
+            if (fileName.toLowerCase().endsWith(extension)) {
                 return true;
             }
         }
@@ -48,14 +70,29 @@ public class RandomVideoSelector {
     }
 
     public List<String> getVideoPaths() {
+        if (!isLoaded) {
+            loadVideoPaths();
+            isLoaded = true;
+        }
         return videoPaths;
     }
 
     public String getRandomVideoPath() {
-        if (videoPaths.isEmpty()) {
-            return null;
+        if (weightedSelector != null) {
+            return weightedSelector.next(random);
+        }
+        if (catalog != null) {
+            return catalog.getRandomPath(directoryPath, MediaCatalog.TYPE_VIDEO, random);
         }
-        int index = random.nextInt(videoPaths.size());
-        return videoPaths.get(index);
+        if (isLoaded) {
+            return videoPaths.isEmpty() ? null : videoPaths.get(random.nextInt(videoPaths.size()));
+        }
+        List<String> picked = sampleVideoPaths(1);
+        return picked.isEmpty() ? null : picked.get(0);
+    }
+
+    // Uniformly picks up to k videos straight from the directory in one pass, holding only k paths
+    public List<String> sampleVideoPaths(int k) {
+        return ReservoirSampler.sampleDirectory(directoryPath, k, RandomVideoSelector::isVideoFile, random);
     }
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.example.randomphotoselector;
+
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+// Single-pass uniform sampling of k items from a stream of unknown length (Algorithm R).
+// Holds at most k items, so picking from a huge folder never builds the full path list.
+public final class ReservoirSampler {
+
+    public interface NameFilter {
+        boolean accept(String fileName);
+    }
+
+    private ReservoirSampler() {
+    }
+
+    public static <T> List<T> sample(Iterator<T> items, int k, Random random) {
+        List<T> reservoir = new ArrayList<>(Math.max(0, k));
+        if (k <= 0) return reservoir;
+        long seen = 0;
+        while (items.hasNext()) {
+            T item = items.next();
+            seen++;
+            if (reservoir.size() < k) {
+                reservoir.add(item);
+            } else {
+                long slot = (long) (random.nextDouble() * seen);
+                if (slot < k) {
+                    reservoir.set((int) slot, item);
+                }
+            }
+        }
+        return reservoir;
+    }
+
+    // Samples k absolute paths of regular files whose names pass the filter. Uses a
+    // DirectoryStream on API 26+; older releases fall back to File.list(). The regular-file check
+    // is part of the filter, so a directory named like a photo never takes a reservoir slot, and
+    // only entries whose names already matched are stat'ed.
+    public static List<String> sampleDirectory(String directoryPath, int k, NameFilter filter, Random random) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return sampleDirectoryStream(directoryPath, k, filter, random);
+        }
+        String[] names = new File(directoryPath).list();
+        if (names == null) return new ArrayList<>();
+        Iterator<String> accepted = new Iterator<String>() {
+            private int index = advance(0);
+
+            private int advance(int from) {
+                while (from < names.length
+                        && !(filter.accept(names[from]) && new File(directoryPath, names[from]).isFile())) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < names.length;
+            }
+
+            @Override
+            public String next() {
+                String name = names[index];
+                index = advance(index + 1);
+                return name;
+            }
+        };
+        return toAbsolutePaths(directoryPath, sample(accepted, k, random));
+    }
+
+    @RequiresApi(Build.VERSION_CODES.O)
+    private static List<String> sampleDirectoryStream(String directoryPath, int k, NameFilter filter, Random random) {
+        Path directory = Paths.get(directoryPath);
+        if (!Files.isDirectory(directory)) return new ArrayList<>();
+        DirectoryStream.Filter<Path> streamFilter = path ->
+                filter.accept(path.getFileName().toString()) && Files.isRegularFile(path);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, streamFilter)) {
+            List<Path> picked = sample(stream.iterator(), k, random);
+            List<String> paths = new ArrayList<>(picked.size());
+            for (Path path : picked) {
+                paths.add(path.toAbsolutePath().toString());
+            }
+            return paths;
+        } catch (IOException | RuntimeException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    private static List<String> toAbsolutePaths(String directoryPath, List<String> names) {
+        List<String> paths = new ArrayList<>(names.size());
+        for (String name : names) {
+            paths.add(new File(directoryPath, name).getAbsolutePath());
+        }
+        return paths;
+    }
+}
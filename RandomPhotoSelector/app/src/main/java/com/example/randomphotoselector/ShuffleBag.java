@@ -0,0 +1,108 @@
+package com.example.randomphotoselector;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// No-repeat random order over a fixed list, built as a lazy Fisher-Yates shuffle: position i of
+// the permutation is only drawn when first needed, and only swapped slots are stored. next(),
+// previous() and peek() are O(1); every item comes up once before the bag is exhausted.
+//
+// The whole permutation follows from the seed, so persisting (seed, cursor) is enough to resume
+// the same order after a restart; restore() replays the first cursor draws once.
+public class ShuffleBag {
+
+    private final List<String> items;
+    private final long seed;
+    private final Random random;
+    private final Map<Integer, Integer> swapped = new HashMap<>(); // position -> item index
+    private int drawn = 0;   // positions [0, drawn) are fixed
+    private int cursor = -1; // position of the current item, -1 before the first next()
+
+    public ShuffleBag(List<String> items, long seed) {
+        this.items = items;
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
+    public static ShuffleBag restore(SharedPreferences prefs, String key, List<String> items) {
+        long seed = prefs.getLong(key + ".seed", 0);
+        int cursor = prefs.getInt(key + ".cursor", -1);
+        int hash = prefs.getInt(key + ".hash", 0);
+        if (!prefs.contains(key + ".seed") || hash != items.hashCode() || cursor >= items.size()) {
+            return new ShuffleBag(items, new Random().nextLong());
+        }
+        ShuffleBag bag = new ShuffleBag(items, seed);
+        bag.drawUpTo(cursor + 1);
+        bag.cursor = cursor;
+        return bag;
+    }
+
+    public void save(SharedPreferences prefs, String key) {
+        prefs.edit()
+                .putLong(key + ".seed", seed)
+                .putInt(key + ".cursor", cursor)
+                .putInt(key + ".hash", items.hashCode())
+                .apply();
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public boolean hasNext() {
+        return cursor + 1 < items.size();
+    }
+
+    public boolean hasPrevious() {
+        return cursor > 0;
+    }
+
+    public String current() {
+        return cursor >= 0 ? itemAt(cursor) : null;
+    }
+
+    public String next() {
+        if (!hasNext()) return null;
+        cursor++;
+        return itemAt(cursor);
+    }
+
+    public String previous() {
+        if (!hasPrevious()) return null;
+        cursor--;
+        return itemAt(cursor);
+    }
+
+    // Item offset places ahead of the cursor without moving it, or null past the end of the bag
+    public String peek(int offset) {
+        int position = cursor + offset;
+        if (position < 0 || position >= items.size()) return null;
+        return itemAt(position);
+    }
+
+    private String itemAt(int position) {
+        drawUpTo(position + 1);
+        return items.get(indexAt(position));
+    }
+
+    private void drawUpTo(int count) {
+        int n = items.size();
+        while (drawn < count && drawn < n) {
+            int j = drawn + random.nextInt(n - drawn);
+            int atDrawn = indexAt(drawn);
+            int atJ = indexAt(j);
+            swapped.put(drawn, atJ);
+            if (j != drawn) swapped.put(j, atDrawn);
+            drawn++;
+        }
+    }
+
+    private int indexAt(int position) {
+        Integer index = swapped.get(position);
+        return index != null ? index : position;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.randomphotoselector;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+// Collapses bursts of next/previous commands into one net move. Each press only adjusts a
+// counter; once no press has come for WINDOW_MS (or MAX_DELAY_MS after the first, so holding a
+// button still moves), the target receives the net count and prepares just the final video.
+// Intermediate videos are never looked up, laid out or prepared. Main thread only.
+public class SkipCoalescer {
+
+    private static final String TAG = "SkipCoalescer";
+    private static final long WINDOW_MS = 200;
+    private static final long MAX_DELAY_MS = 600;
+
+    public interface Target {
+        // moves > 0 is forward, < 0 back; never 0
+        void onSkip(int moves);
+    }
+
+    private final Target target;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flush = this::flush;
+    private int moves = 0;
+    private int presses = 0;
+    private Runnable pick; // Replaces the moves when set
+    private long firstPressMs;
+
+    public SkipCoalescer(Target target) {
+        this.target = target;
+    }
+
+    public void skip(int delta) {
+        pick = null; // A skip after a pick moves from wherever the bag is now
+        moves += delta;
+        press();
+    }
+
+    // A command that chooses its own video, e.g. a folder switch; only the last one in a burst runs
+    public void pick(Runnable action) {
+        pick = action;
+        moves = 0;
+        press();
+    }
+
+    public void cancel() {
+        handler.removeCallbacks(flush);
+        moves = 0;
+        presses = 0;
+        pick = null;
+    }
+
+    private void press() {
+        long now = SystemClock.uptimeMillis();
+        if (presses++ == 0) firstPressMs = now;
+        handler.removeCallbacks(flush);
+        handler.postAtTime(flush, Math.min(now + WINDOW_MS, firstPressMs + MAX_DELAY_MS));
+    }
+
+    private void flush() {
+        int netMoves = moves;
+        Runnable action = pick;
+        if (presses > 1) Log.d(TAG, presses + " presses coalesced into " + (action != null ? "a pick" : netMoves + " moves"));
+        cancel();
+        if (action != null) {
+            action.run();
+        } else if (netMoves != 0) {
+            target.onSkip(netMoves);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.randomphotoselector;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Disk tier of small WebP thumbnails under cacheDir/thumbnails, so list and grid views never
+// decode an original. A thumbnail file is named after the source path, size and mtime, so an
+// edited or replaced file simply misses and is regenerated. Generation runs on a pool of
+// cores - 1 background threads; the newest request runs first, so whatever is on screen now
+// jumps ahead of older prefetch work.
+public class ThumbnailStore {
+
+    private static final String TAG = "ThumbnailStore";
+
+    public static final int SIZE_SMALL = 256; // Grid cells
+    public static final int SIZE_LARGE = 720; // Full-width list items
+
+    private static final String DIRECTORY = "thumbnails";
+    private static final int WEBP_QUALITY = 80;
+    private static final long MAX_DISK_BYTES = 256L * 1024 * 1024;
+    private static final long VIDEO_FRAME_MAX_US = 3_000_000; // Skip black intro frames, but not too far
+
+    public interface Callback {
+        // Main thread; bitmap is null if the file could not be read
+        void onThumbnail(String path, Bitmap bitmap);
+    }
+
+    // Handle for a queued request; once cancelled, its callback never runs
+    public final class Request {
+        private volatile boolean cancelled;
+        private Runnable task;
+
+        public void cancel() {
+            cancelled = true;
+            executor.remove(task); // Drops it if still queued; a running one just isn't delivered
+        }
+    }
+
+    private static ThumbnailStore instance;
+
+    private final File directory;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Set<String> inFlight = new HashSet<>();
+
+    public static synchronized ThumbnailStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ThumbnailStore(Context context) {
+        directory = new File(context.getCacheDir(), DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Could not create " + directory);
+        }
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        // offer() pushes to the front, making the queue LIFO
+        LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<Runnable>() {
+            @Override
+            public boolean offer(Runnable runnable) {
+                return offerFirst(runnable);
+            }
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, queue, runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        executor.execute(() -> trimToSize(MAX_DISK_BYTES));
+    }
+
+    // Reads or generates the thumbnail off the main thread and delivers it there
+    public Request request(String path, int size, Callback callback) {
+        Request request = new Request();
+        request.task = () -> {
+            if (request.cancelled) return;
+            File thumbnail = generate(path, size);
+            Bitmap bitmap = thumbnail != null && !request.cancelled
+                    ? BitmapFactory.decodeFile(thumbnail.getAbsolutePath()) : null;
+            mainHandler.post(() -> {
+                if (!request.cancelled) callback.onThumbnail(path, bitmap);
+            });
+        };
+        executor.execute(request.task);
+        return request;
+    }
+
+    // Queues generation of any missing or stale thumbnails, first path first, then trims the store
+    public void prefetch(List<String> paths, int size) {
+        List<String> reversed = new ArrayList<>(paths);
+        Collections.reverse(reversed);
+        executor.execute(() -> trimToSize(MAX_DISK_BYTES)); // LIFO: runs after the batch
+        for (String path : reversed) {
+            String key = path + "@" + size;
+            synchronized (inFlight) {
+                if (!inFlight.add(key)) continue;
+            }
+            executor.execute(() -> {
+                generate(path, size);
+                synchronized (inFlight) {
+                    inFlight.remove(key);
+                }
+            });
+        }
+    }
+
+    // Blocking: returns the up-to-date thumbnail file, creating it if necessary
+    public File generate(String path, int size) {
+        File source = new File(path);
+        File thumbnail = fileFor(source, size);
+        if (thumbnail == null || !source.isFile()) return null;
+        if (thumbnail.isFile()) {
+            thumbnail.setLastModified(System.currentTimeMillis()); // Keeps trimToSize LRU
+            return thumbnail;
+        }
+
+        Bitmap bitmap;
+        try {
+            bitmap = RandomVideoSelector.isVideoFile(source) ? videoFrame(path, size) : photo(path, size);
+        } catch (Exception | OutOfMemoryError e) {
+            Log.e(TAG, "Failed to create thumbnail for " + path + ": " + e);
+            return null;
+        }
+        if (bitmap == null) return null;
+
+        // Per-thread temp name: a prefetch and a request may generate the same thumbnail at once
+        File temp = new File(directory, thumbnail.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(webpFormat(), WEBP_QUALITY, out);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write thumbnail for " + path + ": " + e);
+            temp.delete();
+            return null;
+        } finally {
+            bitmap.recycle();
+        }
+        if (!temp.renameTo(thumbnail)) {
+            temp.delete();
+            return null;
+        }
+        return thumbnail;
+    }
+
+    // Shorter side scaled down to size; thumbnails are center-cropped into cells or fit to width
+    private static Bitmap photo(String path, int size) {
+        Bitmap decoded = PhotoDecoder.decodeSampled(path, size, size);
+        return decoded != null ? scaleShortSide(decoded, size) : null;
+    }
+
+    private static Bitmap videoFrame(String path, int size) throws IOException {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(path);
+            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            long frameUs = duration != null ? Math.min(Long.parseLong(duration) * 100, VIDEO_FRAME_MAX_US) : 0;
+            Bitmap frame;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                // Scaled in the decoder; the bounding box keeps the short side at least size
+                frame = retriever.getScaledFrameAtTime(frameUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC,
+                        size * 4, size * 4);
+            } else {
+                frame = retriever.getFrameAtTime(frameUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            }
+            return frame != null ? scaleShortSide(frame, size) : null;
+        } finally {
+            retriever.release();
+        }
+    }
+
+    private static Bitmap scaleShortSide(Bitmap bitmap, int size) {
+        int shortSide = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        if (shortSide <= size) return bitmap;
+        float scale = (float) size / shortSide;
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * scale),
+                Math.round(bitmap.getHeight() * scale), true);
+        if (scaled != bitmap) bitmap.recycle();
+        return scaled;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpFormat() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+    }
+
+    private File fileFor(File source, int size) {
+        long mtime = source.lastModified();
+        if (mtime == 0) return null; // Missing or unreadable
+        String key = source.getAbsolutePath() + "|" + source.length() + "|" + mtime;
+        return new File(directory, hash(key) + "_" + size + ".webp");
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode()); // Every Android device has SHA-1
+        }
+    }
+
+    // Deletes the least recently used thumbnails (by mtime, refreshed on use) over the budget.
+    // Stale thumbnails of edited files are never used again, so they age out here.
+    private void trimToSize(long maxBytes) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxBytes) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        int deleted = 0;
+        for (File file : files) {
+            if (total <= maxBytes) break;
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                deleted++;
+            }
+        }
+        Log.d(TAG, "Trimmed " + deleted + " thumbnails, " + (total / 1024) + " KB left");
+    }
+}
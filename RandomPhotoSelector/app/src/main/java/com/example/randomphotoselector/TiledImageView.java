@@ -0,0 +1,328 @@
+package com.example.randomphotoselector;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Pinch-zoom viewer for photos of any resolution. A screen-sized preview of the whole photo is
+// always drawn; when zoomed in past it, only the visible tiles are decoded with
+// BitmapRegionDecoder, at the power-of-two sample level matching the zoom. Tiles live in an LRU
+// sized from the view to hold a full screen of tiles at any zoom, so memory follows the screen,
+// not the source resolution.
+public class TiledImageView extends View {
+
+    private static final String TAG = "TiledImageView";
+    private static final int TILE_SIZE = 512;        // Decoded pixels along a tile edge
+    private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+    private static final int TILE_MARGIN = 8;        // Tiles kept beyond one screenful, for small pans
+    private static final int MEMORY_CLASS_FRACTION = 16;
+    private static final float MAX_ZOOM = 2f;        // Screen pixels per source pixel
+    private static final float DOUBLE_TAP_ZOOM = 3f; // Relative to fit
+
+    // BitmapRegionDecoder serialises decodes internally; one thread also orders recycle() after them
+    private static final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor();
+
+    private final LruCache<String, Bitmap> tiles;
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Matrix orientation = new Matrix(); // Source pixels -> upright image pixels
+    private final Matrix inverseOrientation = new Matrix();
+    private final Matrix previewMatrix = new Matrix();
+    private final RectF visible = new RectF();
+    private final Set<String> pending = new HashSet<>();
+    private final Set<String> thrashed = new HashSet<>(); // Evicted while on screen; not re-requested
+    private volatile Set<String> wantedTiles = Collections.emptySet();
+    private volatile int generation = 0; // Bumped per image so late results for an old one are dropped
+
+    private BitmapRegionDecoder decoder;
+    private Bitmap preview;
+    private int sourceWidth, sourceHeight; // As stored
+    private int imageWidth, imageHeight;   // Upright
+    private float scale, minScale, maxScale;
+    private float offsetX, offsetY;
+
+    public TiledImageView(Context context) {
+        this(context, null);
+    }
+
+    public TiledImageView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = activityManager != null ? activityManager.getMemoryClass() : 64;
+        tiles = new LruCache<String, Bitmap>(memoryClassMb * 1024 * 1024 / MEMORY_CLASS_FRACTION) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                // Should not happen with the budget from onSizeChanged; if it does, leave the
+                // preview showing there rather than decode and evict in a loop
+                if (evicted && wantedTiles.contains(key)) thrashed.add(key);
+            }
+        };
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                zoomTo(scale * detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                offsetX -= distanceX;
+                offsetY -= distanceY;
+                clampOffsets();
+                invalidate();
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                if (scale > minScale * 1.01f) {
+                    resetZoom();
+                } else {
+                    zoomTo(minScale * DOUBLE_TAP_ZOOM, e.getX(), e.getY());
+                }
+                return true;
+            }
+        });
+    }
+
+    public void setImage(String path) {
+        recycle();
+        int token = generation;
+        int viewWidth = getWidth() > 0 ? getWidth() : getResources().getDisplayMetrics().widthPixels;
+        int viewHeight = getHeight() > 0 ? getHeight() : getResources().getDisplayMetrics().heightPixels;
+        decodeExecutor.execute(() -> {
+            ImageHeaderProbe.ImageInfo info = ImageHeaderProbe.get(path);
+            Bitmap previewBitmap;
+            BitmapRegionDecoder regionDecoder = null;
+            if (info != null) {
+                // Decode the preview just large enough to fit the view
+                float fit = Math.min((float) viewWidth / info.displayWidth(), (float) viewHeight / info.displayHeight());
+                fit = Math.min(1f, fit);
+                previewBitmap = PhotoDecoder.decodeSampled(path, Math.round(info.displayWidth() * fit),
+                        Math.round(info.displayHeight() * fit));
+                try {
+                    regionDecoder = newRegionDecoder(path);
+                } catch (IOException e) {
+                    Log.d(TAG, "No region decoding for " + path + ": " + e.getMessage());
+                }
+            } else {
+                previewBitmap = PhotoDecoder.decodeSampled(path, viewWidth, viewHeight);
+            }
+            BitmapRegionDecoder finalDecoder = regionDecoder;
+            post(() -> {
+                if (token != generation) {
+                    if (finalDecoder != null) decodeExecutor.execute(finalDecoder::recycle);
+                    return;
+                }
+                onImageReady(info, previewBitmap, finalDecoder);
+            });
+        });
+    }
+
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder newRegionDecoder(String path) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return BitmapRegionDecoder.newInstance(path);
+        }
+        return BitmapRegionDecoder.newInstance(path, false);
+    }
+
+    private void onImageReady(ImageHeaderProbe.ImageInfo info, Bitmap previewBitmap, BitmapRegionDecoder regionDecoder) {
+        preview = previewBitmap;
+        decoder = regionDecoder;
+        orientation.reset();
+        if (info != null) {
+            sourceWidth = info.width;
+            sourceHeight = info.height;
+            imageWidth = info.displayWidth();
+            imageHeight = info.displayHeight();
+            orientation.postRotate(info.rotationDegrees());
+            if (info.isMirrored()) orientation.postScale(-1, 1);
+            RectF bounds = new RectF(0, 0, sourceWidth, sourceHeight);
+            orientation.mapRect(bounds);
+            orientation.postTranslate(-bounds.left, -bounds.top);
+        } else if (preview != null) {
+            // Unknown header: the preview is all there is
+            imageWidth = preview.getWidth();
+            imageHeight = preview.getHeight();
+        }
+        orientation.invert(inverseOrientation);
+        resetZoom();
+    }
+
+    // Drops the current image and everything decoded for it
+    public void recycle() {
+        generation++;
+        wantedTiles = Collections.emptySet();
+        tiles.evictAll();
+        pending.clear();
+        thrashed.clear();
+        if (decoder != null) {
+            BitmapRegionDecoder old = decoder;
+            decodeExecutor.execute(old::recycle);
+            decoder = null;
+        }
+        preview = null;
+        imageWidth = 0;
+        imageHeight = 0;
+        invalidate();
+    }
+
+    public void resetZoom() {
+        if (imageWidth == 0 || getWidth() == 0) return;
+        minScale = Math.min((float) getWidth() / imageWidth, (float) getHeight() / imageHeight);
+        maxScale = Math.max(minScale, MAX_ZOOM);
+        scale = minScale;
+        clampOffsets();
+        invalidate();
+    }
+
+    private void zoomTo(float newScale, float focusX, float focusY) {
+        if (imageWidth == 0) return;
+        newScale = Math.max(minScale, Math.min(maxScale, newScale));
+        // Keep the image point under the focus where it is
+        offsetX = focusX - (focusX - offsetX) * newScale / scale;
+        offsetY = focusY - (focusY - offsetY) * newScale / scale;
+        scale = newScale;
+        clampOffsets();
+        invalidate();
+    }
+
+    // Centres an axis that fits in the view, otherwise keeps the image edges at or past the view's
+    private void clampOffsets() {
+        float width = imageWidth * scale;
+        float height = imageHeight * scale;
+        offsetX = width <= getWidth() ? (getWidth() - width) / 2
+                : Math.max(getWidth() - width, Math.min(0, offsetX));
+        offsetY = height <= getHeight() ? (getHeight() - height) / 2
+                : Math.max(getHeight() - height, Math.min(0, offsetY));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // A tile spans 256-512 screen pixels (see drawTiles), so a screen needs at most this many,
+        // counting partial tiles at both edges
+        int screenTiles = (w / (TILE_SIZE / 2) + 2) * (h / (TILE_SIZE / 2) + 2);
+        tiles.resize(Math.max(tiles.maxSize(), (screenTiles + TILE_MARGIN) * TILE_BYTES));
+        resetZoom();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        scaleDetector.onTouchEvent(event);
+        gestureDetector.onTouchEvent(event);
+        return true;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (imageWidth == 0) return;
+        canvas.save();
+        canvas.translate(offsetX, offsetY);
+        canvas.scale(scale, scale);
+        if (preview != null) {
+            previewMatrix.setScale((float) imageWidth / preview.getWidth(), (float) imageHeight / preview.getHeight());
+            canvas.drawBitmap(preview, previewMatrix, paint);
+        }
+        // Tiles only once the zoom asks for more detail than the preview has
+        if (decoder != null && (preview == null || scale > (float) preview.getWidth() / imageWidth)) {
+            canvas.concat(orientation);
+            drawTiles(canvas);
+        } else {
+            wantedTiles = Collections.emptySet();
+        }
+        canvas.restore();
+    }
+
+    private void drawTiles(Canvas canvas) {
+        int sample = 1;
+        while (sample * 2 <= 1f / scale) {
+            sample *= 2;
+        }
+        int span = TILE_SIZE * sample; // Source pixels per tile edge
+
+        // Visible part of the view, in source pixels
+        visible.set(-offsetX / scale, -offsetY / scale, (getWidth() - offsetX) / scale, (getHeight() - offsetY) / scale);
+        inverseOrientation.mapRect(visible);
+        int firstCol = Math.max(0, (int) (visible.left / span));
+        int firstRow = Math.max(0, (int) (visible.top / span));
+        int lastCol = Math.min((sourceWidth - 1) / span, (int) (visible.right / span));
+        int lastRow = Math.min((sourceHeight - 1) / span, (int) (visible.bottom / span));
+
+        Set<String> wanted = new HashSet<>();
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                String key = sample + "/" + col + "/" + row;
+                Rect region = new Rect(col * span, row * span,
+                        Math.min(sourceWidth, (col + 1) * span), Math.min(sourceHeight, (row + 1) * span));
+                wanted.add(key);
+                Bitmap tile = tiles.get(key);
+                if (tile != null) {
+                    canvas.drawBitmap(tile, null, region, paint);
+                } else if (!thrashed.contains(key)) {
+                    requestTile(key, region, sample);
+                }
+            }
+        }
+        if (!wanted.equals(wantedTiles)) thrashed.clear(); // The view moved; worth trying again
+        wantedTiles = wanted;
+    }
+
+    private void requestTile(String key, Rect region, int sample) {
+        if (!pending.add(key)) return;
+        int token = generation;
+        BitmapRegionDecoder regionDecoder = decoder;
+        decodeExecutor.execute(() -> {
+            Bitmap tile = null;
+            // Skip tiles scrolled or zoomed away while queued
+            if (token == generation && wantedTiles.contains(key)) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sample;
+                try {
+                    tile = regionDecoder.decodeRegion(region, options);
+                } catch (IllegalArgumentException | IllegalStateException | OutOfMemoryError e) {
+                    Log.e(TAG, "Failed to decode tile " + key + ": " + e);
+                }
+            }
+            Bitmap result = tile;
+            post(() -> {
+                if (token != generation) return;
+                pending.remove(key);
+                if (result == null || !wantedTiles.contains(key)) return; // Scrolled away while decoding
+                tiles.put(key, result);
+                invalidate();
+            });
+        });
+    }
+}
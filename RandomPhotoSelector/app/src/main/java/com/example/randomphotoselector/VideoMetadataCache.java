@@ -0,0 +1,363 @@
+package com.example.randomphotoselector;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Video width/height/rotation/duration/codec keyed by path + size + mtime, so the play path never
+// has to open a MediaMetadataRetriever. get() is a memory lookup plus one stat and is safe on the
+// UI thread; misses are extracted on a background thread by request() or VideoMetadataWorker.
+// Files that fail to extract get a failed row under the same key and are not retried until
+// their size or mtime changes.
+public class VideoMetadataCache extends SQLiteOpenHelper {
+
+    private static final String TAG = "VideoMetadataCache";
+    private static final String DATABASE_NAME = "video_metadata.db";
+    private static final int DATABASE_VERSION = 3;
+    private static final String TABLE_METADATA = "video_metadata";
+
+    public static class VideoMetadata {
+        public final String path;
+        public final long size;
+        public final long mtime;
+        public final int width;
+        public final int height;
+        public final int rotation; // Degrees clockwise
+        public final long durationMs;
+        public final String codec; // Sample entry fourcc (e.g. "avc1"), or the track MIME type from the fallback
+        public final boolean moovAtEnd; // Only known for files the box parser read
+
+        VideoMetadata(String path, long size, long mtime, int width, int height, int rotation,
+                      long durationMs, String codec, boolean moovAtEnd) {
+            this.path = path;
+            this.size = size;
+            this.mtime = mtime;
+            this.width = width;
+            this.height = height;
+            this.rotation = rotation;
+            this.durationMs = durationMs;
+            this.codec = codec;
+            this.moovAtEnd = moovAtEnd;
+        }
+
+        // Size as displayed, i.e. with the rotation applied
+        public int displayWidth() {
+            return rotation % 180 == 0 ? width : height;
+        }
+
+        public int displayHeight() {
+            return rotation % 180 == 0 ? height : width;
+        }
+
+        boolean matches(File file) {
+            return file.length() == size && file.lastModified() == mtime;
+        }
+    }
+
+    public interface Callback {
+        // Called on the main thread; metadata is null if extraction failed
+        void onMetadata(String path, VideoMetadata metadata);
+    }
+
+    private static VideoMetadataCache instance;
+
+    private final Map<String, VideoMetadata> memory = new ConcurrentHashMap<>();
+    private final Map<String, VideoMetadata> failures = new ConcurrentHashMap<>(); // Size + mtime only
+    private final Set<String> inFlight = new HashSet<>();
+    private final ExecutorService extractExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean preloaded = false;
+
+    public static synchronized VideoMetadataCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new VideoMetadataCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private VideoMetadataCache(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_METADATA + " ("
+                + "path TEXT PRIMARY KEY, "
+                + "size INTEGER NOT NULL, "
+                + "mtime INTEGER NOT NULL, "
+                + "width INTEGER NOT NULL, "
+                + "height INTEGER NOT NULL, "
+                + "rotation INTEGER NOT NULL, "
+                + "duration INTEGER NOT NULL, "
+                + "codec TEXT, "
+                + "moov_at_end INTEGER NOT NULL DEFAULT 0, "
+                + "failed INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Rows from v1 came from the retriever, which cannot tell where moov is; re-extract them
+            db.execSQL("DELETE FROM " + TABLE_METADATA);
+            db.execSQL("ALTER TABLE " + TABLE_METADATA + " ADD COLUMN moov_at_end INTEGER NOT NULL DEFAULT 0");
+        }
+        if (oldVersion < 3) {
+            db.execSQL("ALTER TABLE " + TABLE_METADATA + " ADD COLUMN failed INTEGER NOT NULL DEFAULT 0");
+        }
+    }
+
+    // Loads every stored entry into memory; call once from a background thread
+    public void preload() {
+        if (preloaded) return;
+        long start = System.currentTimeMillis();
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_METADATA, null, null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                VideoMetadata metadata = fromCursor(cursor);
+                (isFailed(cursor) ? failures : memory).putIfAbsent(metadata.path, metadata);
+            }
+        }
+        preloaded = true;
+        Log.d(TAG, "Preloaded " + memory.size() + " entries and " + failures.size() + " failures in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    // Non-blocking lookup: returns null on a miss or if the file changed since it was extracted
+    public VideoMetadata get(String path) {
+        VideoMetadata metadata = memory.get(path);
+        if (metadata == null) return null;
+        if (!metadata.matches(new File(path))) {
+            memory.remove(path);
+            return null;
+        }
+        return metadata;
+    }
+
+    // Extracts a missing entry in the background and reports it on the main thread
+    public void request(String path, Callback callback) {
+        synchronized (inFlight) {
+            if (!inFlight.add(path)) {
+                // Already queued; the earlier request fills the cache, poll it once that finishes
+                extractExecutor.execute(() -> postResult(path, get(path), callback));
+                return;
+            }
+        }
+        extractExecutor.execute(() -> {
+            VideoMetadata metadata = null;
+            try {
+                metadata = load(path);
+            } finally {
+                synchronized (inFlight) {
+                    inFlight.remove(path);
+                }
+            }
+            postResult(path, metadata, callback);
+        });
+    }
+
+    private void postResult(String path, VideoMetadata metadata, Callback callback) {
+        if (callback != null) {
+            mainHandler.post(() -> callback.onMetadata(path, metadata));
+        }
+    }
+
+    // Blocking fill used by VideoMetadataWorker; returns how many entries were extracted. Known
+    // failures are skipped by load() until the file changes.
+    public int fillMissing(List<String> paths) {
+        preload();
+        int extracted = 0;
+        for (String path : paths) {
+            if (get(path) != null) continue;
+            if (load(path) != null) extracted++;
+        }
+        return extracted;
+    }
+
+    // Files recorded with moov after the media data, i.e. candidates for FaststartWorker
+    public List<String> getMoovAtEndPaths() {
+        List<String> paths = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_METADATA, new String[]{"path"}, "moov_at_end = 1",
+                null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                paths.add(cursor.getString(0));
+            }
+        }
+        return paths;
+    }
+
+    // Drops an entry so the next lookup re-extracts it, e.g. after the file was rewritten
+    public void invalidate(String path) {
+        memory.remove(path);
+        failures.remove(path);
+        getWritableDatabase().delete(TABLE_METADATA, "path = ?", new String[]{path});
+    }
+
+    // Returns the stored entry if it is still valid, otherwise extracts and stores a new one
+    private VideoMetadata load(String path) {
+        VideoMetadata cached = get(path);
+        if (cached != null) return cached;
+
+        File file = new File(path);
+        if (!file.isFile()) return null;
+        VideoMetadata failure = failures.get(path);
+        if (failure != null) {
+            if (failure.matches(file)) return null;
+            failures.remove(path);
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        try (Cursor cursor = db.query(TABLE_METADATA, null, "path = ?", new String[]{path},
+                null, null, null)) {
+            if (cursor.moveToFirst()) {
+                VideoMetadata stored = fromCursor(cursor);
+                if (stored.matches(file)) {
+                    if (isFailed(cursor)) {
+                        failures.put(path, stored);
+                        return null;
+                    }
+                    memory.put(path, stored);
+                    return stored;
+                }
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        VideoMetadata metadata = extract(file);
+        if (metadata == null) {
+            recordFailure(db, path, file);
+            return null;
+        }
+        ContentValues values = new ContentValues();
+        values.put("path", metadata.path);
+        values.put("size", metadata.size);
+        values.put("mtime", metadata.mtime);
+        values.put("width", metadata.width);
+        values.put("height", metadata.height);
+        values.put("rotation", metadata.rotation);
+        values.put("duration", metadata.durationMs);
+        values.put("codec", metadata.codec);
+        values.put("moov_at_end", metadata.moovAtEnd ? 1 : 0);
+        db.insertWithOnConflict(TABLE_METADATA, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        memory.put(path, metadata);
+        Log.d(TAG, "Extracted " + path + " in " + (System.currentTimeMillis() - start) + "ms");
+        return metadata;
+    }
+
+    // Same key as a good row, so a changed file replaces it and is extracted again
+    private void recordFailure(SQLiteDatabase db, String path, File file) {
+        VideoMetadata failure = new VideoMetadata(path, file.length(), file.lastModified(), 0, 0, 0, 0, null, false);
+        ContentValues values = new ContentValues();
+        values.put("path", path);
+        values.put("size", failure.size);
+        values.put("mtime", failure.mtime);
+        values.put("width", 0);
+        values.put("height", 0);
+        values.put("rotation", 0);
+        values.put("duration", 0);
+        values.put("failed", 1);
+        db.insertWithOnConflict(TABLE_METADATA, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        failures.put(path, failure);
+    }
+
+    // Tries the box parser first for ISO-BMFF files, then falls back to the platform retriever
+    static VideoMetadata extract(File file) {
+        String path = file.getAbsolutePath();
+        long size = file.length();
+        long mtime = file.lastModified();
+        if (isIsoBmff(path)) {
+            try {
+                Mp4BoxParser.Mp4Info info = Mp4BoxParser.parse(file);
+                if (info != null && info.width > 0 && info.height > 0) {
+                    return new VideoMetadata(path, size, mtime, info.width, info.height, info.rotation(),
+                            info.durationMs, info.fourcc, info.moovAtEnd);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Box parser failed for " + path + ": " + e.getMessage());
+            }
+        }
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(path);
+            int width = parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+            int height = parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+            int rotation = parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+            long duration = parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+            return new VideoMetadata(path, size, mtime, width, height, rotation, duration, extractCodec(path), false);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to extract metadata for " + path + ": " + e.getMessage());
+            return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                Log.e(TAG, "Error releasing MediaMetadataRetriever: " + e.getMessage());
+            }
+        }
+    }
+
+    // MIME type of the first video track, e.g. "video/avc"
+    private static String extractCodec(String path) {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(path);
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("video/")) return mime;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to read codec for " + path + ": " + e.getMessage());
+        } finally {
+            extractor.release();
+        }
+        return null;
+    }
+
+    private static boolean isIsoBmff(String path) {
+        String lower = path.toLowerCase();
+        return lower.endsWith(".mp4") || lower.endsWith(".mov") || lower.endsWith(".m4v");
+    }
+
+    private static int parseInt(String value) {
+        if (value == null) return 0;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isFailed(Cursor cursor) {
+        return cursor.getInt(cursor.getColumnIndexOrThrow("failed")) != 0;
+    }
+
+    private static VideoMetadata fromCursor(Cursor cursor) {
+        return new VideoMetadata(
+                cursor.getString(cursor.getColumnIndexOrThrow("path")),
+                cursor.getLong(cursor.getColumnIndexOrThrow("size")),
+                cursor.getLong(cursor.getColumnIndexOrThrow("mtime")),
+                cursor.getInt(cursor.getColumnIndexOrThrow("width")),
+                cursor.getInt(cursor.getColumnIndexOrThrow("height")),
+                cursor.getInt(cursor.getColumnIndexOrThrow("rotation")),
+                cursor.getLong(cursor.getColumnIndexOrThrow("duration")),
+                cursor.getString(cursor.getColumnIndexOrThrow("codec")),
+                cursor.getInt(cursor.getColumnIndexOrThrow("moov_at_end")) != 0);
+    }
+}
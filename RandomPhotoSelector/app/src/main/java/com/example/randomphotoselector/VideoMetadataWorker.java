@@ -0,0 +1,41 @@
+package com.example.randomphotoselector;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+// Fills the VideoMetadataCache for every catalogued video in the given folders, so that by the
+// time a video is played its dimensions are already known.
+public class VideoMetadataWorker extends Worker {
+
+    private static final String TAG = "VideoMetadataWorker";
+    public static final String KEY_FOLDERS = "folders";
+
+    public VideoMetadataWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String[] folders = getInputData().getStringArray(KEY_FOLDERS);
+        if (folders == null) {
+            Log.e(TAG, "No folders given");
+            return Result.failure();
+        }
+
+        MediaCatalog catalog = MediaCatalog.getInstance(getApplicationContext());
+        VideoMetadataCache cache = VideoMetadataCache.getInstance(getApplicationContext());
+        long start = System.currentTimeMillis();
+        int extracted = 0;
+        for (String folder : folders) {
+            if (isStopped()) return Result.success();
+            extracted += cache.fillMissing(catalog.getPaths(folder, MediaCatalog.TYPE_VIDEO));
+        }
+        Log.d(TAG, "Extracted " + extracted + " entries in " + (System.currentTimeMillis() - start) + "ms");
+        return Result.success();
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.randomphotoselector;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Weighted random picks over one folder of the catalog. Picks read a snapshot (paths + alias
+// table) in O(1); it is built on a background thread, and until the first one exists picks are
+// uniform. Only file changes force a rebuild. Play/boost changes patch the snapshot
+// per item: a pick of a changed item is accepted with probability newWeight / builtWeight, so a
+// play costs O(1). Items whose weight went up (or recency penalties that have since decayed)
+// are picked up by a throttled rebuild.
+public class WeightedSelector {
+
+    private static final String TAG = "WeightedSelector";
+    private static final int MAX_ATTEMPTS = 8;
+    private static final double RAISE_THRESHOLD = 1.05;      // Ratio above which a rebuild is wanted
+    private static final long MIN_REBUILD_INTERVAL_MS = 30 * 1000;
+    private static final long REFRESH_INTERVAL_MS = 10 * 60 * 1000; // Re-reads decayed penalties
+    private static final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor();
+
+    private static class Snapshot {
+        final String[] paths;
+        final double[] weights;
+        final Map<String, Integer> indexOf;
+        final AliasTable table;
+        final long fileVersion;
+        final long builtAt;
+        // Patched by next() under the selector's lock
+        final Map<Integer, Double> acceptance = new HashMap<>();
+        long signalVersion;
+        boolean raised; // Some item now weighs more than the table gives it
+
+        Snapshot(String[] paths, double[] weights, long fileVersion, long signalVersion, long builtAt) {
+            this.paths = paths;
+            this.weights = weights;
+            this.indexOf = new HashMap<>(paths.length * 2);
+            for (int i = 0; i < paths.length; i++) indexOf.put(paths[i], i);
+            this.table = new AliasTable(weights);
+            this.fileVersion = fileVersion;
+            this.signalVersion = signalVersion;
+            this.builtAt = builtAt;
+        }
+    }
+
+    private final MediaCatalog catalog;
+    private final String folderPath;
+    private final int mediaType;
+    private final FolderWeights weights;
+    private final AtomicBoolean rebuildPending = new AtomicBoolean(false);
+    private volatile Snapshot snapshot;
+
+    public WeightedSelector(MediaCatalog catalog, String folderPath, int mediaType, FolderWeights weights) {
+        this.catalog = catalog;
+        this.folderPath = folderPath;
+        this.mediaType = mediaType;
+        this.weights = weights;
+    }
+
+    public synchronized String next(Random random) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // The first build reads every row of the folder; keep it off the caller's thread
+            scheduleRebuild();
+            return catalog.getRandomPath(folderPath, mediaType, random);
+        }
+        long now = System.currentTimeMillis();
+        if (current.fileVersion != catalog.getFileVersion()) {
+            scheduleRebuild();
+        }
+        applySignalChanges(current, now);
+        if (current.raised ? now - current.builtAt >= MIN_REBUILD_INTERVAL_MS
+                : !current.acceptance.isEmpty() && now - current.builtAt >= REFRESH_INTERVAL_MS) {
+            scheduleRebuild();
+        }
+        // The snapshot may lag behind deletions; retry a few times before falling back to uniform
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int index = current.table.next(random);
+            if (index < 0) break;
+            String path = current.paths[index];
+            if (!catalog.contains(path)) continue;
+            Double acceptance = current.acceptance.get(index);
+            if (acceptance == null || random.nextDouble() < acceptance) return path;
+        }
+        return catalog.getRandomPath(folderPath, mediaType, random);
+    }
+
+    private void applySignalChanges(Snapshot current, long now) {
+        long signalVersion = catalog.getSignalVersion();
+        if (signalVersion == current.signalVersion) return;
+        List<MediaCatalog.MediaSignals> changes = catalog.getSignalChanges(current.signalVersion);
+        current.signalVersion = signalVersion;
+        if (changes == null) {
+            // Fell too far behind the change log to patch; start over from the database
+            current.raised = true;
+            return;
+        }
+        for (MediaCatalog.MediaSignals item : changes) {
+            Integer index = current.indexOf.get(item.path);
+            if (index == null) continue; // New file; the file version covers it
+            double ratio = weights.weightOf(item, now) / current.weights[index];
+            if (ratio > RAISE_THRESHOLD) current.raised = true;
+            current.acceptance.put(index, Math.min(1, ratio));
+        }
+    }
+
+    private void scheduleRebuild() {
+        if (!rebuildPending.compareAndSet(false, true)) return;
+        rebuildExecutor.execute(() -> {
+            rebuildPending.set(false);
+            try {
+                snapshot = build();
+            } catch (Exception e) {
+                Log.e(TAG, "Error rebuilding alias table for " + folderPath, e);
+            }
+        });
+    }
+
+    private Snapshot build() {
+        long start = System.currentTimeMillis();
+        // Read the versions first: a change racing the read below is then applied again as a patch
+        long fileVersion = catalog.getFileVersion();
+        long signalVersion = catalog.getSignalVersion();
+        catalog.getPaths(folderPath, mediaType); // Makes sure the folder has been synced once
+        List<MediaCatalog.MediaSignals> signals = catalog.getSignals(folderPath, mediaType);
+        String[] paths = new String[signals.size()];
+        double[] itemWeights = new double[signals.size()];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < paths.length; i++) {
+            MediaCatalog.MediaSignals item = signals.get(i);
+            paths[i] = item.path;
+            itemWeights[i] = weights.weightOf(item, now);
+        }
+        Snapshot built = new Snapshot(paths, itemWeights, fileVersion, signalVersion, now);
+        Log.d(TAG, "Built alias table for " + folderPath + " (" + paths.length + " items) in "
+                + (System.currentTimeMillis() - start) + "ms");
+        return built;
+    }
+}
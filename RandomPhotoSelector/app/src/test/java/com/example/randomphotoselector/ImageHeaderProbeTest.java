@@ -0,0 +1,214 @@
+package com.example.randomphotoselector;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ImageHeaderProbeTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void jpeg_withoutExif_isNormal() throws IOException {
+        ImageHeaderProbe.ImageInfo info = probe(jpeg(null, 4000, 3000));
+
+        assertEquals("jpeg", info.format);
+        assertEquals(4000, info.width);
+        assertEquals(3000, info.height);
+        assertEquals(ImageHeaderProbe.ORIENTATION_NORMAL, info.orientation);
+        assertFalse(info.isPortrait());
+    }
+
+    @Test
+    public void jpeg_bigEndianExifOrientation6_isRotatedPortrait() throws IOException {
+        ImageHeaderProbe.ImageInfo info = probe(jpeg(exif(ByteOrder.BIG_ENDIAN, 6), 4000, 3000));
+
+        assertEquals(6, info.orientation);
+        assertEquals(90, info.rotationDegrees());
+        assertTrue(info.isTransposed());
+        assertEquals(3000, info.displayWidth());
+        assertEquals(4000, info.displayHeight());
+        assertTrue(info.isPortrait());
+        assertFalse(info.isMirrored());
+    }
+
+    @Test
+    public void jpeg_littleEndianExifOrientation3_isUpsideDown() throws IOException {
+        ImageHeaderProbe.ImageInfo info = probe(jpeg(exif(ByteOrder.LITTLE_ENDIAN, 3), 640, 480));
+
+        assertEquals(3, info.orientation);
+        assertEquals(180, info.rotationDegrees());
+        assertFalse(info.isTransposed());
+        assertEquals(640, info.displayWidth());
+    }
+
+    @Test
+    public void jpeg_invalidExifOrientation_isIgnored() throws IOException {
+        assertEquals(ImageHeaderProbe.ORIENTATION_NORMAL, probe(jpeg(exif(ByteOrder.BIG_ENDIAN, 9), 10, 10)).orientation);
+    }
+
+    @Test
+    public void jpeg_mirroredOrientations() throws IOException {
+        ImageHeaderProbe.ImageInfo info = probe(jpeg(exif(ByteOrder.BIG_ENDIAN, 5), 200, 100));
+
+        assertTrue(info.isMirrored());
+        assertEquals(90, info.rotationDegrees());
+        assertEquals(100, info.displayWidth());
+    }
+
+    @Test
+    public void png_readsIhdr() throws IOException {
+        ByteBuffer png = ByteBuffer.allocate(33);
+        png.putInt(0x89504e47).putInt(0x0d0a1a0a).putInt(13).put(ascii("IHDR")).putInt(1080).putInt(2400);
+        ImageHeaderProbe.ImageInfo info = probe(png.array());
+
+        assertEquals("png", info.format);
+        assertEquals(1080, info.width);
+        assertEquals(2400, info.height);
+        assertTrue(info.isPortrait());
+    }
+
+    @Test
+    public void gif_readsLittleEndianScreenSize() throws IOException {
+        ByteBuffer gif = ByteBuffer.allocate(13).order(ByteOrder.LITTLE_ENDIAN);
+        gif.put(ascii("GIF89a")).putShort((short) 500).putShort((short) 300);
+        ImageHeaderProbe.ImageInfo info = probe(gif.array());
+
+        assertEquals("gif", info.format);
+        assertEquals(500, info.width);
+        assertEquals(300, info.height);
+    }
+
+    @Test
+    public void bmp_topDownInfoHeader_usesAbsoluteHeight() throws IOException {
+        ImageHeaderProbe.ImageInfo info = probe(bmp(40, 800, -600));
+
+        assertEquals("bmp", info.format);
+        assertEquals(800, info.width);
+        assertEquals(600, info.height);
+    }
+
+    @Test
+    public void bmp_coreHeader_readsShortDimensions() throws IOException {
+        ByteBuffer bmp = ByteBuffer.allocate(26).order(ByteOrder.LITTLE_ENDIAN);
+        bmp.put(ascii("BM")).putInt(26).putInt(0).putInt(26).putInt(12).putShort((short) 320).putShort((short) 240);
+        ImageHeaderProbe.ImageInfo info = probe(bmp.array());
+
+        assertEquals(320, info.width);
+        assertEquals(240, info.height);
+    }
+
+    @Test
+    public void webp_lossy() throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(10).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.put(new byte[]{0, 0, 0, (byte) 0x9d, 0x01, 0x2a}).putShort((short) 1024).putShort((short) 768);
+        ImageHeaderProbe.ImageInfo info = probe(webp("VP8 ", chunk.array()));
+
+        assertEquals("webp", info.format);
+        assertEquals(1024, info.width);
+        assertEquals(768, info.height);
+    }
+
+    @Test
+    public void webp_lossless() throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(10).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.put((byte) 0x2f).putInt((4000 - 1) | (3000 - 1) << 14);
+        ImageHeaderProbe.ImageInfo info = probe(webp("VP8L", chunk.array()));
+
+        assertEquals(4000, info.width);
+        assertEquals(3000, info.height);
+    }
+
+    @Test
+    public void webp_extended() throws IOException {
+        byte[] chunk = new byte[10];
+        chunk[4] = 0x1f; // 20000 - 1 = 0x004e1f, 24-bit little-endian
+        chunk[5] = 0x4e;
+        chunk[7] = (byte) 0xe7; // 1000 - 1 = 0x0003e7
+        chunk[8] = 0x03;
+        ImageHeaderProbe.ImageInfo info = probe(webp("VP8X", chunk));
+
+        assertEquals(20000, info.width);
+        assertEquals(1000, info.height);
+    }
+
+    @Test
+    public void unknownFormat_returnsNull() throws IOException {
+        assertNull(probe(ascii("not an image at all")));
+    }
+
+    @Test
+    public void calculateInSampleSize_keepsAtLeastRequestedSize() {
+        assertEquals(1, ImageHeaderProbe.calculateInSampleSize(1000, 1000, 1000, 1000));
+        assertEquals(2, ImageHeaderProbe.calculateInSampleSize(4000, 3000, 1080, 1080));
+        assertEquals(4, ImageHeaderProbe.calculateInSampleSize(4000, 3000, 1000, 700));
+        assertEquals(1, ImageHeaderProbe.calculateInSampleSize(4000, 3000, 0, 0));
+    }
+
+    private ImageHeaderProbe.ImageInfo probe(byte[] data) throws IOException {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return ImageHeaderProbe.probe(file);
+    }
+
+    // SOI, optional APP1 payload, SOF0 and a few bytes of scan
+    private static byte[] jpeg(byte[] app1, int width, int height) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xff);
+        out.write(0xd8);
+        if (app1 != null) writeSegment(out, 0xe1, app1);
+        writeSegment(out, 0xc0, ByteBuffer.allocate(15)
+                .put((byte) 8).putShort((short) height).putShort((short) width).put((byte) 3).array());
+        writeSegment(out, 0xda, new byte[10]);
+        return out.toByteArray();
+    }
+
+    private static void writeSegment(ByteArrayOutputStream out, int marker, byte[] payload) {
+        out.write(0xff);
+        out.write(marker);
+        out.write((payload.length + 2) >> 8);
+        out.write(payload.length + 2);
+        out.write(payload, 0, payload.length);
+    }
+
+    // "Exif\0\0", a TIFF header and an IFD0 holding only the orientation tag
+    private static byte[] exif(ByteOrder order, int orientation) {
+        ByteBuffer exif = ByteBuffer.allocate(6 + 8 + 2 + 12 + 4).order(order);
+        exif.put(ascii("Exif")).putShort((short) 0);
+        exif.putShort(order == ByteOrder.LITTLE_ENDIAN ? (short) 0x4949 : (short) 0x4d4d);
+        exif.putShort((short) 42).putInt(8);
+        exif.putShort((short) 1);
+        exif.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        exif.putInt(0);
+        return exif.array();
+    }
+
+    private static byte[] bmp(int headerSize, int width, int height) {
+        ByteBuffer bmp = ByteBuffer.allocate(54).order(ByteOrder.LITTLE_ENDIAN);
+        bmp.put(ascii("BM")).putInt(54).putInt(0).putInt(54).putInt(headerSize).putInt(width).putInt(height);
+        return bmp.array();
+    }
+
+    private static byte[] webp(String chunkType, byte[] chunk) {
+        ByteBuffer webp = ByteBuffer.allocate(20 + chunk.length).order(ByteOrder.LITTLE_ENDIAN);
+        webp.put(ascii("RIFF")).putInt(12 + chunk.length).put(ascii("WEBP")).put(ascii(chunkType)).putInt(chunk.length).put(chunk);
+        return webp.array();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.randomphotoselector;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static com.example.randomphotoselector.Mp4Fixtures.*;
+import static org.junit.Assert.*;
+
+public class Mp4BoxParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void moovFirst_readsVideoTrack() throws IOException {
+        Mp4BoxParser.Mp4Info info = parse(concat(ftyp(), videoMoov(0, IDENTITY, stco(100)), box("mdat", new byte[64])));
+
+        assertNotNull(info);
+        assertEquals(1920, info.width);
+        assertEquals(1080, info.height);
+        assertEquals(5000, info.durationMs);
+        assertEquals("avc1", info.fourcc);
+        assertEquals(0, info.rotation());
+        assertFalse(info.moovAtEnd);
+    }
+
+    @Test
+    public void moovAfterMdat_isMoovAtEnd() throws IOException {
+        Mp4BoxParser.Mp4Info info = parse(concat(ftyp(), box("mdat", new byte[64]), videoMoov(0, IDENTITY, stco(40))));
+
+        assertNotNull(info);
+        assertTrue(info.moovAtEnd);
+        assertEquals(1920, info.width);
+    }
+
+    @Test
+    public void largeSizeMdat_isSkipped() throws IOException {
+        Mp4BoxParser.Mp4Info info = parse(concat(ftyp(), largeBox("mdat", new byte[64]), videoMoov(0, IDENTITY, stco(48))));
+
+        assertNotNull(info);
+        assertTrue(info.moovAtEnd);
+        assertEquals(5000, info.durationMs);
+    }
+
+    @Test
+    public void tkhdVersion0_readsRotation() throws IOException {
+        assertEquals(90, parse(concat(ftyp(), videoMoov(0, ROTATE_90, stco(0)))).rotation());
+        assertEquals(180, parse(concat(ftyp(), videoMoov(0, ROTATE_180, stco(0)))).rotation());
+        assertEquals(270, parse(concat(ftyp(), videoMoov(0, ROTATE_270, stco(0)))).rotation());
+    }
+
+    @Test
+    public void tkhdVersion1_readsRotationAndSize() throws IOException {
+        Mp4BoxParser.Mp4Info info = parse(concat(ftyp(), videoMoov(1, ROTATE_90, stco(0))));
+
+        assertNotNull(info);
+        assertEquals(90, info.rotation());
+        assertEquals(1920, info.width);
+        assertEquals(1080, info.height);
+    }
+
+    @Test
+    public void missingTrackValues_fallBackToSampleEntryAndMovieDuration() throws IOException {
+        byte[] moov = box("moov",
+                durationBox("mvhd", 1, 600, 1800),
+                trak(tkhd(0, IDENTITY, 0, 0), durationBox("mdhd", 0, 90000, 0),
+                        "vide", stsd("hvc1", 1280, 720), stco(0)));
+
+        Mp4BoxParser.Mp4Info info = parse(concat(ftyp(), moov));
+
+        assertNotNull(info);
+        assertEquals(1280, info.width);
+        assertEquals(720, info.height);
+        assertEquals(3000, info.durationMs);
+        assertEquals("hvc1", info.fourcc);
+    }
+
+    @Test
+    public void audioTrackFirst_returnsVideoTrack() throws IOException {
+        byte[] moov = box("moov",
+                durationBox("mvhd", 0, 1000, 5000),
+                trak(tkhd(0, IDENTITY, 0, 0), durationBox("mdhd", 0, 44100, 44100),
+                        "soun", stsd("mp4a", 0, 0), stco(0)),
+                trak(tkhd(0, ROTATE_270, 640, 480), durationBox("mdhd", 0, 30, 150),
+                        "vide", stsd("avc1", 640, 480), stco(0)));
+
+        Mp4BoxParser.Mp4Info info = parse(concat(ftyp(), moov));
+
+        assertNotNull(info);
+        assertEquals(640, info.width);
+        assertEquals(5000, info.durationMs);
+        assertEquals(270, info.rotation());
+    }
+
+    @Test
+    public void noVideoTrack_returnsNull() throws IOException {
+        byte[] moov = box("moov",
+                durationBox("mvhd", 0, 1000, 5000),
+                trak(tkhd(0, IDENTITY, 0, 0), durationBox("mdhd", 0, 44100, 44100),
+                        "soun", stsd("mp4a", 0, 0), stco(0)));
+
+        assertNull(parse(concat(ftyp(), moov)));
+    }
+
+    @Test
+    public void truncatedFile_returnsNull() throws IOException {
+        byte[] whole = concat(ftyp(), box("mdat", new byte[64]), videoMoov(0, IDENTITY, stco(40)));
+        byte[] truncated = new byte[whole.length - 20];
+        System.arraycopy(whole, 0, truncated, 0, truncated.length);
+
+        assertNull(parse(truncated));
+    }
+
+    private Mp4BoxParser.Mp4Info parse(byte[] data) throws IOException {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return Mp4BoxParser.parse(file);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.randomphotoselector;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static com.example.randomphotoselector.Mp4Fixtures.*;
+import static org.junit.Assert.*;
+
+public class Mp4FaststartTest {
+
+    private static final int CHUNK_SIZE = 96;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void moovAtEnd_stco_movesMoovFirstAndShiftsOffsets() throws IOException {
+        checkRewrite(false);
+    }
+
+    @Test
+    public void moovAtEnd_co64_movesMoovFirstAndShiftsOffsets() throws IOException {
+        checkRewrite(true);
+    }
+
+    @Test
+    public void moovAtEnd_audioAndVideo_shiftsEveryTable() throws IOException {
+        byte[] ftyp = ftyp();
+        byte[] mdat = mdat();
+        long first = ftyp.length + 8;
+        byte[] moov = box("moov",
+                durationBox("mvhd", 0, 1000, 5000),
+                trak(tkhd(0, IDENTITY, 0, 0), durationBox("mdhd", 0, 44100, 220500),
+                        "soun", stsd("mp4a", 0, 0), co64(first + CHUNK_SIZE, first + 2 * CHUNK_SIZE)),
+                trak(tkhd(0, IDENTITY, 1920, 1080), durationBox("mdhd", 0, 90000, 450000),
+                        "vide", stsd("avc1", 1920, 1080), stco(first)));
+        File file = write(concat(ftyp, mdat, moov));
+
+        assertTrue(Mp4Faststart.rewrite(file));
+
+        byte[] rewritten = Files.readAllBytes(file.toPath());
+        long[] audio = readChunkOffsets(rewritten, true);
+        assertEquals(first + CHUNK_SIZE + moov.length, audio[0]);
+        assertEquals(first + 2 * CHUNK_SIZE + moov.length, audio[1]);
+        assertEquals(first + moov.length, readChunkOffsets(rewritten, false)[0]);
+    }
+
+    @Test
+    public void moovFirst_isLeftAlone() throws IOException {
+        byte[] ftyp = ftyp();
+        byte[] moov = videoMoov(0, IDENTITY, stco(0));
+        byte[] original = concat(ftyp, moov, mdat());
+        File file = write(original);
+
+        assertFalse(Mp4Faststart.rewrite(file));
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void offsetOutsideMdat_leavesOriginalUntouched() throws IOException {
+        byte[] ftyp = ftyp();
+        // The second chunk points into ftyp, which does not move with mdat
+        byte[] original = concat(ftyp, mdat(), videoMoov(0, IDENTITY, stco(ftyp.length + 8, 0)));
+        File file = write(original);
+
+        assertFalse(Mp4Faststart.rewrite(file));
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+        assertEquals(1, folder.getRoot().list().length); // No temp file left behind
+    }
+
+    @Test
+    public void rewrite_keepsSizeAndUpdatesModifiedTime() throws IOException {
+        byte[] ftyp = ftyp();
+        long first = ftyp.length + 8;
+        byte[] original = concat(ftyp, mdat(), videoMoov(0, IDENTITY, stco(first, first + CHUNK_SIZE)));
+        File file = write(original);
+        long mtime = 1_600_000_000_000L;
+        assertTrue(file.setLastModified(mtime));
+
+        assertTrue(Mp4Faststart.rewrite(file));
+        assertEquals(original.length, file.length());
+        assertTrue(file.lastModified() > mtime);
+        assertFalse(Mp4Faststart.rewrite(file)); // Already faststart now
+    }
+
+    private void checkRewrite(boolean wide) throws IOException {
+        byte[] ftyp = ftyp();
+        byte[] mdat = mdat();
+        long first = ftyp.length + 8;
+        long[] offsets = {first, first + CHUNK_SIZE, first + 2 * CHUNK_SIZE};
+        byte[] moov = videoMoov(0, IDENTITY, wide ? co64(offsets) : stco(offsets));
+        File file = write(concat(ftyp, mdat, moov));
+
+        assertTrue(Mp4BoxParser.parse(file).moovAtEnd);
+        assertTrue(Mp4Faststart.rewrite(file));
+
+        byte[] rewritten = Files.readAllBytes(file.toPath());
+        assertEquals(ftyp.length + moov.length + mdat.length, rewritten.length);
+        assertArrayEquals(ftyp, Arrays.copyOfRange(rewritten, 0, ftyp.length));
+        assertEquals("moov", new String(rewritten, ftyp.length + 4, 4, "US-ASCII"));
+        assertArrayEquals(mdat, Arrays.copyOfRange(rewritten, ftyp.length + moov.length, rewritten.length));
+
+        Mp4BoxParser.Mp4Info info = Mp4BoxParser.parse(file);
+        assertFalse(info.moovAtEnd);
+        assertEquals(1920, info.width);
+        assertEquals(5000, info.durationMs);
+
+        // Every chunk offset moved by the size of moov and still points at its chunk
+        long[] shifted = readChunkOffsets(rewritten, wide);
+        assertEquals(offsets.length, shifted.length);
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals(offsets[i] + moov.length, shifted[i]);
+            assertEquals(i, rewritten[(int) shifted[i]]);
+        }
+    }
+
+    // Chunk i is CHUNK_SIZE bytes of value i
+    private static byte[] mdat() {
+        byte[] body = new byte[3 * CHUNK_SIZE];
+        for (int i = 0; i < body.length; i++) body[i] = (byte) (i / CHUNK_SIZE);
+        return box("mdat", body);
+    }
+
+    private static long[] readChunkOffsets(byte[] data, boolean wide) {
+        int type = indexOf(data, wide ? "co64" : "stco");
+        assertTrue(type > 0);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long[] offsets = new long[buffer.getInt(type + 8)];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = wide ? buffer.getLong(type + 12 + i * 8) : buffer.getInt(type + 12 + i * 4) & 0xffffffffL;
+        }
+        return offsets;
+    }
+
+    private File write(byte[] data) throws IOException {
+        File file = folder.newFile("video.mp4");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.randomphotoselector;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Builds synthetic ISO-BMFF boxes for the MP4 tests: just enough of each box for the parser,
+// with no real media behind them
+final class Mp4Fixtures {
+
+    static final int[] IDENTITY = {0x10000, 0, 0, 0, 0x10000, 0, 0, 0, 0x40000000};
+    static final int[] ROTATE_90 = {0, 0x10000, 0, -0x10000, 0, 0, 0, 0, 0x40000000};
+    static final int[] ROTATE_180 = {-0x10000, 0, 0, 0, -0x10000, 0, 0, 0, 0x40000000};
+    static final int[] ROTATE_270 = {0, -0x10000, 0, 0x10000, 0, 0, 0, 0, 0x40000000};
+
+    private Mp4Fixtures() {
+    }
+
+    static byte[] box(String type, byte[]... children) {
+        int size = 8;
+        for (byte[] child : children) size += child.length;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(size).put(type.getBytes(StandardCharsets.US_ASCII));
+        for (byte[] child : children) buffer.put(child);
+        return buffer.array();
+    }
+
+    // Box with a 64-bit size field (size == 1)
+    static byte[] largeBox(String type, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + body.length);
+        buffer.putInt(1).put(type.getBytes(StandardCharsets.US_ASCII)).putLong(16 + body.length).put(body);
+        return buffer.array();
+    }
+
+    static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) out.write(part, 0, part.length);
+        return out.toByteArray();
+    }
+
+    static byte[] ftyp() {
+        return box("ftyp", ascii("isom"), ints(0x200), ascii("isomavc1"));
+    }
+
+    // mvhd and mdhd share their leading layout
+    static byte[] durationBox(String type, int version, long timescale, long duration) {
+        ByteBuffer body = ByteBuffer.allocate(version == 1 ? 32 : 20);
+        body.putInt(version << 24);
+        if (version == 1) {
+            body.putLong(0).putLong(0).putInt((int) timescale).putLong(duration);
+        } else {
+            body.putInt(0).putInt(0).putInt((int) timescale).putInt((int) duration);
+        }
+        return box(type, body.array());
+    }
+
+    static byte[] tkhd(int version, int[] matrix, int width, int height) {
+        int matrixOffset = version == 1 ? 52 : 40;
+        ByteBuffer body = ByteBuffer.allocate(matrixOffset + 44);
+        body.putInt(0, version << 24 | 0x7);
+        for (int i = 0; i < 9; i++) body.putInt(matrixOffset + i * 4, matrix[i]);
+        body.putInt(matrixOffset + 36, width << 16);
+        body.putInt(matrixOffset + 40, height << 16);
+        return box("tkhd", body.array());
+    }
+
+    static byte[] hdlr(String handler) {
+        return box("hdlr", ints(0, 0), ascii(handler), new byte[12], new byte[]{0});
+    }
+
+    static byte[] stsd(String fourcc, int width, int height) {
+        ByteBuffer entry = ByteBuffer.allocate(86);
+        entry.putInt(86).put(ascii(fourcc));
+        entry.putShort(14, (short) 1); // Data reference index
+        entry.putShort(32, (short) width);
+        entry.putShort(34, (short) height);
+        return box("stsd", ints(0, 1), entry.array());
+    }
+
+    static byte[] stco(long... offsets) {
+        ByteBuffer body = ByteBuffer.allocate(8 + offsets.length * 4);
+        body.putInt(0).putInt(offsets.length);
+        for (long offset : offsets) body.putInt((int) offset);
+        return box("stco", body.array());
+    }
+
+    static byte[] co64(long... offsets) {
+        ByteBuffer body = ByteBuffer.allocate(8 + offsets.length * 8);
+        body.putInt(0).putInt(offsets.length);
+        for (long offset : offsets) body.putLong(offset);
+        return box("co64", body.array());
+    }
+
+    static byte[] trak(byte[] tkhd, byte[] mdhd, String handler, byte[] stsd, byte[] chunkOffsets) {
+        return box("trak", tkhd,
+                box("mdia", mdhd, hdlr(handler),
+                        box("minf", box("stbl", stsd, chunkOffsets))));
+    }
+
+    // moov for a single 1920x1080 avc1 track lasting 5 s
+    static byte[] videoMoov(int tkhdVersion, int[] matrix, byte[] chunkOffsets) {
+        return box("moov",
+                durationBox("mvhd", 0, 1000, 5000),
+                trak(tkhd(tkhdVersion, matrix, 1920, 1080), durationBox("mdhd", 0, 90000, 450000),
+                        "vide", stsd("avc1", 1920, 1080), chunkOffsets));
+    }
+
+    static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static byte[] ints(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        for (int value : values) buffer.putInt(value);
+        return buffer.array();
+    }
+
+    // Index of the first occurrence of the four-character type in data, or -1
+    static int indexOf(byte[] data, String type) {
+        byte[] needle = ascii(type);
+        outer:
+        for (int i = 0; i + needle.length <= data.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (data[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}